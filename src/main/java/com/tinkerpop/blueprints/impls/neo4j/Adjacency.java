@@ -0,0 +1,62 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import com.tinkerpop.blueprints.Direction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The expansions of one vertex that were read from the server, keyed by direction and set of labels. Each expansion
+ * holds the ids of the relationships in the order the server returned them, together with the id of the neighbour
+ * reached through each of them.
+ * <p>
+ * Instances are immutable, as they are shared by every thread that reads the graph: adding an expansion returns a
+ * new instance that replaces the cached one.
+ */
+class Adjacency {
+
+    static final Adjacency EMPTY = new Adjacency(Collections.emptyMap());
+
+    static class Expansion {
+        final long[] relationshipIds;
+        final long[] neighbourIds;
+        final long loadedAt = System.currentTimeMillis();
+
+        Expansion(long[] relationshipIds, long[] neighbourIds) {
+            this.relationshipIds = relationshipIds;
+            this.neighbourIds = neighbourIds;
+        }
+    }
+
+    private final Map<String, Expansion> expansions;
+
+    private Adjacency(Map<String, Expansion> expansions) {
+        this.expansions = expansions;
+    }
+
+    /**
+     * Returns the expansion, or null if there is none or it was read more than {@code ttlMillis} ago.
+     */
+    Expansion get(long ttlMillis, Direction direction, String... labels) {
+        Expansion expansion = expansions.get(key(direction, labels));
+        if (expansion != null && ttlMillis > 0 && System.currentTimeMillis() - expansion.loadedAt > ttlMillis) {
+            return null;
+        }
+        return expansion;
+    }
+
+    Adjacency with(Direction direction, String[] labels, Expansion expansion) {
+        Map<String, Expansion> copy = new HashMap<>(expansions);
+        copy.put(key(direction, labels), expansion);
+        return new Adjacency(copy);
+    }
+
+    private static String key(Direction direction, String[] labels) {
+        String[] sorted = labels.clone();
+        Arrays.sort(sorted);
+        return direction + Arrays.toString(sorted);
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded LRU cache of per-element data, such as node snapshots, keyed by element id and shared by all transactions
+ * of a {@link Neo4jGraph}. The graph invalidates the entries of elements it writes, and again when the transaction
+ * that wrote them rolls back; entries older than the time to live are dropped on access so that writes made by other
+ * clients become visible eventually.
+ */
+public class ElementCache<S> {
+
+    private static class Snapshot<S> {
+        final S snapshot;
+        final long loadedAt;
+
+        Snapshot(S snapshot, long loadedAt) {
+            this.snapshot = snapshot;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<Long, Snapshot<S>> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    ElementCache(final int maxSize, final long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<Long, Snapshot<S>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Snapshot<S>> eldest) {
+                if (size() > ElementCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Returns the cached snapshot, or null if there is none or it has expired.
+     */
+    public synchronized S get(long id) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Snapshot<S> entry = entries.get(id);
+        if (entry != null && ttlMillis > 0 && System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+            entries.remove(id);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.snapshot;
+    }
+
+    public synchronized void put(long id, S snapshot) {
+        if (isEnabled()) {
+            entries.put(id, new Snapshot<>(snapshot, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the one computed from the current snapshot, or from null if there is none or it has
+     * expired. Does not count as a hit or miss.
+     */
+    synchronized void update(long id, UnaryOperator<S> update) {
+        if (!isEnabled()) {
+            return;
+        }
+        Snapshot<S> entry = entries.get(id);
+        boolean valid = entry != null && (ttlMillis <= 0 || System.currentTimeMillis() - entry.loadedAt <= ttlMillis);
+        entries.put(id, new Snapshot<>(update.apply(valid ? entry.snapshot : null), System.currentTimeMillis()));
+    }
+
+    long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public synchronized void invalidate(long id) {
+        if (isEnabled()) {
+            entries.remove(id);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ElementCache[size=%d, hits=%d, misses=%d, evictions=%d]", entries.size(), hits, misses, evictions);
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative element ids to objects, so that lookups by id do not box the key.
+ * Removal shifts the following entries back instead of leaving tombstones. Negative keys, such as the id -1 of a
+ * pending element, are never stored: they are rejected by {@link #put(long, Object)} and not found by the others.
+ */
+class LongObjectMap<V> {
+
+    private static final long FREE = -1;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+
+    LongObjectMap() {
+        allocate(16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if (key < 0) {
+            return null;
+        }
+        for (int slot = slot(key); keys[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    void put(long key, V value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key: " + key);
+        }
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        int slot = slot(key);
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == FREE) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        if (key < 0) {
+            return null;
+        }
+        int gap = slot(key);
+        while (keys[gap] != key) {
+            if (keys[gap] == FREE) {
+                return null;
+            }
+            gap = (gap + 1) & mask;
+        }
+        V removed = (V) values[gap];
+        for (int slot = (gap + 1) & mask; keys[slot] != FREE; slot = (slot + 1) & mask) {
+            int home = slot(keys[slot]);
+            // The entry may move into the gap unless its home slot lies between the gap and its current slot
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = FREE;
+        values[gap] = null;
+        size--;
+        return removed;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, FREE);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(keys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+}
@@ -0,0 +1,410 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import com.tinkerpop.blueprints.*;
+import com.tinkerpop.blueprints.util.ExceptionFactory;
+import com.tinkerpop.blueprints.util.wrappers.WrapperGraph;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationUtils;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.Values;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Bulk loader with the contract of {@link com.tinkerpop.blueprints.util.wrappers.batch.BatchGraph}: vertices are
+ * added and looked up by external ids, elements cannot be retrieved or removed, and the graph commits by itself
+ * every {@code bufferSize} added elements.
+ * <p>
+ * The wrapped {@link Neo4jGraph} should have vertex and edge batching enabled so that creations are sent in
+ * {@code unwind} batches; {@link #Neo4jBatchGraph(Configuration)} enables them with the buffer size unless the
+ * configuration sets them explicitly.
+ * <p>
+ * Committed external ids are kept in an {@link OffHeapIdMap}, which is closed when the graph is shut down. Each
+ * commit also stores the position last passed to {@link #markProgress(long)} in the id map, so that an interrupted
+ * load can tell which of its input was committed.
+ * <p>
+ * The id map is only written once Neo4j has committed, so a load that dies in between leaves elements in the store
+ * that the id map does not know of. A graph given a checkpoint name therefore also writes the position and the ids of
+ * each commit to a node labelled {@code ImportCheckpoint} in the same transaction, and when it is opened, brings the
+ * id map up to date from that node if the id map is behind it. The node is removed by
+ * {@link #removeCheckpoint()}.
+ */
+public class Neo4jBatchGraph implements TransactionalGraph, WrapperGraph<Neo4jGraph> {
+
+    private static final Logger logger = Logger.getLogger(Neo4jBatchGraph.class.getName());
+
+    static final String CHECKPOINT_LABEL = "ImportCheckpoint";
+    private static final String WRITE_CHECKPOINT = "merge (c:`" + CHECKPOINT_LABEL + "` {name: {name}}) " +
+            "set c.progress = {progress}, c.mapped = {mapped}, c.keys = {keys}, c.nodeIds = {nodeIds}";
+    private static final String READ_CHECKPOINT = "match (c:`" + CHECKPOINT_LABEL + "` {name: {name}}) " +
+            "return c.progress, c.mapped, c.keys, c.nodeIds";
+    private static final String REMOVE_CHECKPOINT = "match (c:`" + CHECKPOINT_LABEL + "` {name: {name}}) delete c";
+
+    public static final long DEFAULT_BUFFER_SIZE = 10000;
+
+    private final Neo4jGraph baseGraph;
+    private final long bufferSize;
+
+    private final Map<Object, Vertex> batchIds = new HashMap<>();
+    private final OffHeapIdMap committedIds;
+    private final String checkpointName;
+
+    private long progress;
+    private long batchMutations = 0;
+    private long batchCount = 0;
+    private long batchStart = System.currentTimeMillis();
+
+    /**
+     * Creates a batch graph whose commits are recorded in the checkpoint node with the given name, or in the id map
+     * only if the name is null.
+     */
+    public Neo4jBatchGraph(final Neo4jGraph baseGraph, final long bufferSize, final OffHeapIdMap idMap,
+                           final String checkpointName) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.baseGraph = baseGraph;
+        this.bufferSize = bufferSize;
+        this.committedIds = idMap;
+        this.checkpointName = checkpointName;
+        if (checkpointName != null) {
+            recoverCheckpoint();
+        }
+        this.progress = idMap.getCheckpoint();
+    }
+
+    public Neo4jBatchGraph(final Neo4jGraph baseGraph, final long bufferSize, final OffHeapIdMap idMap) {
+        this(baseGraph, bufferSize, idMap, null);
+    }
+
+    public Neo4jBatchGraph(final Neo4jGraph baseGraph, final long bufferSize) {
+        this(baseGraph, bufferSize, OffHeapIdMap.allocate(bufferSize));
+    }
+
+    /**
+     * Opens a {@link Neo4jGraph} for bulk loading. The buffer size is read from
+     * {@code blueprints.neo4j.batchCommitSize} and also used as the vertex, edge and property batch size unless those
+     * are configured. If {@code blueprints.neo4j.idMapFile} is set, the id map is memory-mapped to that file and
+     * reopened from it when it already exists, and commits are recorded in a checkpoint node named after the file
+     * name unless {@code blueprints.neo4j.checkpointName} names it.
+     */
+    public Neo4jBatchGraph(final Configuration config) {
+        this(new Neo4jGraph(withBatchDefaults(config)),
+                config.getLong("blueprints.neo4j.batchCommitSize", DEFAULT_BUFFER_SIZE),
+                openIdMap(config),
+                checkpointName(config));
+    }
+
+    private static String checkpointName(final Configuration config) {
+        if (!config.containsKey("blueprints.neo4j.idMapFile")) {
+            return config.getString("blueprints.neo4j.checkpointName", null);
+        }
+        String fileName = Paths.get(config.getString("blueprints.neo4j.idMapFile")).getFileName().toString();
+        return config.getString("blueprints.neo4j.checkpointName", fileName);
+    }
+
+    private static OffHeapIdMap openIdMap(final Configuration config) {
+        long expectedSize = config.getLong("blueprints.neo4j.batchCommitSize", DEFAULT_BUFFER_SIZE);
+        if (!config.containsKey("blueprints.neo4j.idMapFile")) {
+            return OffHeapIdMap.allocate(expectedSize);
+        }
+        try {
+            return OffHeapIdMap.open(Paths.get(config.getString("blueprints.neo4j.idMapFile")), expectedSize);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static Configuration withBatchDefaults(final Configuration config) {
+        Configuration batchConfig = new BaseConfiguration();
+        ConfigurationUtils.copy(config, batchConfig);
+        long bufferSize = config.getLong("blueprints.neo4j.batchCommitSize", DEFAULT_BUFFER_SIZE);
+        for (String key : new String[]{"vertexBatchSize", "edgeBatchSize", "propertyBufferSize"}) {
+            if (!batchConfig.containsKey("blueprints.neo4j." + key)) {
+                batchConfig.setProperty("blueprints.neo4j." + key, (int) Math.min(bufferSize, Integer.MAX_VALUE));
+            }
+        }
+        return batchConfig;
+    }
+
+    @Override
+    public Neo4jGraph getBaseGraph() {
+        return baseGraph;
+    }
+
+    public OffHeapIdMap getIdMap() {
+        return committedIds;
+    }
+
+    @Override
+    public Features getFeatures() {
+        Features features = baseGraph.getFeatures().copyFeatures();
+        features.ignoresSuppliedIds = false;
+        features.isWrapper = true;
+        features.supportsEdgeIteration = false;
+        features.supportsVertexIteration = false;
+        features.supportsEdgeRetrieval = false;
+        features.supportsThreadedTransactions = false;
+        return features;
+    }
+
+    @Override
+    public Vertex addVertex(Object id) {
+        return addVertex(id, Collections.emptyMap());
+    }
+
+    /**
+     * Adds a vertex together with its properties. The vertex only counts towards the buffer once its properties are
+     * set, so an automatic commit never separates the two.
+     */
+    public Vertex addVertex(Object id, Map<String, Object> properties) {
+        if (id != null && (batchIds.containsKey(id) || committedIds.containsKey(id))) {
+            throw ExceptionFactory.vertexWithIdAlreadyExists(id);
+        }
+        Vertex vertex = baseGraph.addVertex(null);
+        properties.forEach(vertex::setProperty);
+        if (id != null) {
+            batchIds.put(id, vertex);
+        }
+        mutated();
+        return vertex;
+    }
+
+    /**
+     * Returns the vertex added with the given external id, or null if there is none. Committed vertices are returned
+     * as lazy vertices that read their properties on first access.
+     */
+    @Override
+    public Vertex getVertex(Object id) {
+        if (null == id) {
+            throw ExceptionFactory.vertexIdCanNotBeNull();
+        }
+        Vertex vertex = batchIds.get(id);
+        if (vertex != null) {
+            return vertex;
+        }
+        long nodeId = committedIds.get(id);
+        return nodeId == OffHeapIdMap.NOT_FOUND ? null : baseGraph.lazyVertex(nodeId);
+    }
+
+    @Override
+    public Edge addEdge(Object id, Vertex outVertex, Vertex inVertex, String label) {
+        Edge edge = baseGraph.addEdge(null, outVertex, inVertex, label);
+        mutated();
+        return edge;
+    }
+
+    /**
+     * Adds an edge between the vertices added with the given external ids, together with its properties. Resolving
+     * a committed id does not read the vertex from the server.
+     */
+    public Edge addEdge(Object id, Object outVertexId, Object inVertexId, String label, Map<String, Object> properties) {
+        Edge edge = baseGraph.addEdge(null, vertexHandle(outVertexId), vertexHandle(inVertexId), label);
+        properties.forEach(edge::setProperty);
+        mutated();
+        return edge;
+    }
+
+    private Vertex vertexHandle(Object id) {
+        Vertex vertex = getVertex(id);
+        if (vertex == null) {
+            throw ExceptionFactory.vertexWithIdDoesNotExist(id);
+        }
+        return vertex;
+    }
+
+    public long getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Records the position in the input that the elements added so far correspond to, e.g. the number of elements
+     * read. It should be marked before adding the element at that position, since adding it may commit.
+     */
+    public void markProgress(long position) {
+        this.progress = position;
+    }
+
+    /**
+     * Returns the position marked before the last commit, which the id map recorded with the ids of that commit.
+     */
+    public long getCommittedProgress() {
+        return committedIds.getCheckpoint();
+    }
+
+    /**
+     * Adds the ids of the last commit recorded in the checkpoint node to the id map if the id map has not recorded
+     * that commit, i.e. if the load died after Neo4j committed and before the id map was written.
+     */
+    private void recoverCheckpoint() {
+        StatementResult result = baseGraph.withTx().run(READ_CHECKPOINT, Values.parameters("name", checkpointName));
+        if (result.hasNext()) {
+            Record checkpoint = result.next();
+            long committed = checkpoint.get(0).asLong();
+            if (committed < committedIds.getCheckpoint()) {
+                throw new IllegalStateException("The id map recorded position " + committedIds.getCheckpoint() +
+                        " but the store only committed position " + committed);
+            }
+            if (committed > committedIds.getCheckpoint()) {
+                if (!checkpoint.get(2).isNull()) {
+                    List<Object> keys = checkpoint.get(2).asList();
+                    List<Object> nodeIds = checkpoint.get(3).asList();
+                    for (int i = 0; i < keys.size(); i++) {
+                        committedIds.put(((Number) keys.get(i)).longValue(), ((Number) nodeIds.get(i)).longValue());
+                    }
+                }
+                // Only the ids of the last commit are in the node, the id map must hold all the others
+                if (committedIds.size() != checkpoint.get(1).asLong()) {
+                    throw new IllegalStateException("The id map holds " + committedIds.size() + " ids but the store " +
+                            "committed " + checkpoint.get(1).asLong() + "; it is not the id map of this load");
+                }
+                committedIds.setCheckpoint(committed);
+                committedIds.force();
+                logger.info("Recovered the ids committed up to position " + committed + " from the checkpoint node");
+            }
+        }
+        baseGraph.commit();
+    }
+
+    /**
+     * Deletes the checkpoint node, e.g. once the load has completed. Does nothing without a checkpoint name.
+     */
+    public void removeCheckpoint() {
+        if (checkpointName != null) {
+            baseGraph.withTx().run(REMOVE_CHECKPOINT, Values.parameters("name", checkpointName));
+            baseGraph.commit();
+        }
+    }
+
+    private void mutated() {
+        if (++batchMutations >= bufferSize) {
+            commit();
+        }
+    }
+
+    /**
+     * Commits the batch, then records its ids and the marked position in the id map. With a checkpoint name they are
+     * written to the checkpoint node in the committed transaction first.
+     */
+    @Override
+    public void commit() {
+        long[] keys = new long[batchIds.size()];
+        long[] nodeIds = new long[batchIds.size()];
+        long mapped = committedIds.size();
+        int i = 0;
+        for (Map.Entry<Object, Vertex> entry : batchIds.entrySet()) {
+            keys[i] = OffHeapIdMap.keyOf(entry.getKey());
+            nodeIds[i] = (Long) entry.getValue().getId();
+            if (committedIds.get(keys[i]) == OffHeapIdMap.NOT_FOUND) {
+                mapped++;
+            }
+            i++;
+        }
+        if (checkpointName != null && batchMutations > 0) {
+            // A commit without vertices removes the ids of the previous one from the node
+            baseGraph.withTx().run(WRITE_CHECKPOINT, Values.parameters("name", checkpointName, "progress", progress,
+                    "mapped", mapped, "keys", keys.length == 0 ? null : keys, "nodeIds", keys.length == 0 ? null : nodeIds));
+        }
+        baseGraph.commit();
+        for (int j = 0; j < keys.length; j++) {
+            committedIds.put(keys[j], nodeIds[j]);
+        }
+        batchIds.clear();
+        committedIds.setCheckpoint(progress);
+        committedIds.force();
+
+        long now = System.currentTimeMillis();
+        if (batchMutations > 0) {
+            batchCount++;
+            long elapsed = Math.max(now - batchStart, 1);
+            logger.info(String.format("Batch %d: committed %d elements in %d ms (%.0f elements/s)",
+                    batchCount, batchMutations, elapsed, batchMutations * 1000.0 / elapsed));
+        }
+        batchMutations = 0;
+        batchStart = now;
+    }
+
+    @Override
+    public void rollback() {
+        throw new UnsupportedOperationException("Can not rollback during batch loading");
+    }
+
+    @Override
+    public void stopTransaction(Conclusion conclusion) {
+        if (conclusion == Conclusion.FAILURE) {
+            rollback();
+        } else {
+            commit();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        commit();
+        baseGraph.shutdown();
+        try {
+            committedIds.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void removeVertex(Vertex vertex) {
+        throw new UnsupportedOperationException("Removal is not supported during batch loading");
+    }
+
+    @Override
+    public Iterable<Vertex> getVertices() {
+        throw retrievalNotSupported();
+    }
+
+    @Override
+    public Iterable<Vertex> getVertices(String key, Object value) {
+        throw retrievalNotSupported();
+    }
+
+    @Override
+    public Edge getEdge(Object id) {
+        throw retrievalNotSupported();
+    }
+
+    @Override
+    public void removeEdge(Edge edge) {
+        throw new UnsupportedOperationException("Removal is not supported during batch loading");
+    }
+
+    @Override
+    public Iterable<Edge> getEdges() {
+        throw retrievalNotSupported();
+    }
+
+    @Override
+    public Iterable<Edge> getEdges(String key, Object value) {
+        throw retrievalNotSupported();
+    }
+
+    @Override
+    public GraphQuery query() {
+        throw retrievalNotSupported();
+    }
+
+    private static UnsupportedOperationException retrievalNotSupported() {
+        return new UnsupportedOperationException("Retrieval is not supported during batch loading");
+    }
+
+    @Override
+    public String toString() {
+        return "Neo4jBatchGraph[" + baseGraph + "]";
+    }
+
+}
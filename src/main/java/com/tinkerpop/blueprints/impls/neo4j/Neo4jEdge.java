@@ -5,52 +5,115 @@ import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.util.ElementHelper;
 import com.tinkerpop.blueprints.util.ExceptionFactory;
+import org.neo4j.driver.internal.InternalRelationship;
 import org.neo4j.driver.v1.StatementResult;
 import org.neo4j.driver.v1.Value;
 import org.neo4j.driver.v1.Values;
 import org.neo4j.driver.v1.types.Relationship;
 
+import java.util.Collections;
+
 public class Neo4jEdge extends Neo4jElement<Relationship> implements Edge {
 
+    Vertex outVertex;
+    Vertex inVertex;
+
     public Neo4jEdge(final Relationship relationship, final Neo4jGraph graphDb) {
         super(graphDb);
         this.rawElement = relationship;
     }
 
+    /**
+     * Creates a pending edge whose creation is deferred until the graph flushes its write buffer.
+     */
+    Neo4jEdge(final Vertex outVertex, final Vertex inVertex, final String label, final Neo4jGraph graphDb) {
+        super(graphDb);
+        this.rawElement = new InternalRelationship(-1, -1, -1, label, Collections.emptyMap());
+        this.outVertex = outVertex;
+        this.inVertex = inVertex;
+        this.pending = true;
+    }
+
+    /**
+     * Creates an edge from its id, and its label and endpoint ids when they are known. Its properties are loaded when
+     * first read, as are the label and endpoints if they are null and -1.
+     */
+    Neo4jEdge(final long id, final String label, final long outId, final long inId, final Neo4jGraph graphDb) {
+        super(graphDb);
+        this.rawElement = new InternalRelationship(id, outId, inId, label);
+        this.hydrated = false;
+    }
+
+    @Override
+    protected Relationship load() {
+        Relationship relationship = graphDb.readRelationship(nativeId());
+        if (relationship == null) {
+            throw new IllegalArgumentException("Edge with id does not exist: " + nativeId());
+        }
+        return relationship;
+    }
+
+    /**
+     * Patches the id assigned by the server into a pending edge. Its endpoints have been created by then.
+     */
+    void created(long id) {
+        long outId = ((Number) outVertex.getId()).longValue();
+        long inId = ((Number) inVertex.getId()).longValue();
+        rawElement = new InternalRelationship(id, outId, inId, rawElement.type(), rawElement.asMap(v -> Values.value(v)));
+        outVertex = null;
+        inVertex = null;
+        pending = false;
+        graphDb.remember(this);
+        graphDb.written(this);
+        graphDb.adjacencyChanged(outId);
+        graphDb.adjacencyChanged(inId);
+    }
+
     @Override
     public Vertex getVertex(Direction direction) throws IllegalArgumentException {
         if (direction == Direction.BOTH) {
             throw ExceptionFactory.bothIsNotSupported();
         }
+        if (pending) {
+            graphDb.flush();
+        }
+        Relationship relationship = rawElement.startNodeId() < 0 ? getRawElement() : rawElement;
         // !!! The GraphPerfTest I was given has the direction transposed... I transposed it here too because the
         // Oracle impl is probably bugged too !!!
-        String statement = "match (a)-[r]->(b) where id(r) = {id} return " + (direction == Direction.IN ? "a" : "b");
-        Value params = Values.parameters("id", getId());
-        StatementResult result = graphDb.withTx().run(statement, params);
-        return new Neo4jVertex(result.single().get(0).asNode(), graphDb);
+        return graphDb.lazyVertex(direction == Direction.IN ? relationship.startNodeId() : relationship.endNodeId());
     }
 
     @Override
     public String getLabel() {
-        return rawElement.type();
+        return rawElement.type() != null ? rawElement.type() : getRawElement().type();
     }
 
     @Override
     public void setProperty(String key, Object value) {
         ElementHelper.validateProperty(this, key, value);
-        String statement = String.format("match ()-[r]->() where id(r) = {id} set r.`%s` = {value} return r", key);
-        Value params = Values.parameters("id", getId(), "value", value);
-        StatementResult result = graphDb.withTx().run(statement, params);
-        rawElement = result.single().get(0).asRelationship();
+        if (bufferProperty(key, value)) {
+            rawElement = clone(this, key, value);
+        } else {
+            Value params = Values.parameters("id", getId(), "props", Collections.singletonMap(key, value));
+            StatementResult result = graphDb.withTx().run(Statements.SET_RELATIONSHIP_PROPERTIES, params);
+            refresh(result.single().get(0).asRelationship());
+        }
+        graphDb.written(this);
+        graphDb.mutated(key, value);
     }
 
     @Override
     public Object removeProperty(String key) {
         Object propValue = getProperty(key);
-        String statement = String.format("match ()-[r]->() where id(r) = {id} remove r.`%s` return r", key);
-        Value params = Values.parameters("id", getId());
-        StatementResult result = graphDb.withTx().run(statement, params);
-        rawElement = result.single().get(0).asRelationship();
+        if (bufferProperty(key, null)) {
+            rawElement = clone(this, key);
+        } else {
+            Value params = Values.parameters("id", getId(), "props", Collections.singletonMap(key, null));
+            StatementResult result = graphDb.withTx().run(Statements.SET_RELATIONSHIP_PROPERTIES, params);
+            refresh(result.single().get(0).asRelationship());
+        }
+        graphDb.written(this);
+        graphDb.mutated(key, null);
         return propValue;
     }
 
@@ -59,4 +122,25 @@ public class Neo4jEdge extends Neo4jElement<Relationship> implements Edge {
         graphDb.removeEdge(this);
     }
 
+    /**
+     * Compares edges by id, except for pending edges, see {@link Neo4jVertex#equals(Object)}.
+     */
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Edge) || pending || other instanceof Neo4jElement && ((Neo4jElement) other).isPending()) {
+            return false;
+        }
+        return ElementHelper.areEqual(this, other);
+    }
+
+    public int hashCode() {
+        return pending ? System.identityHashCode(this) : getId().hashCode();
+    }
+
+    public String toString() {
+        return ("Edge(" + getId() + ")");
+    }
+
 }
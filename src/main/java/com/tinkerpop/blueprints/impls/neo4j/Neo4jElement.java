@@ -20,6 +20,10 @@ public abstract class Neo4jElement<S extends Entity> implements Element {
 
     protected final Neo4jGraph graphDb;
     protected S rawElement;
+    protected boolean pending = false;
+    protected boolean hydrated = true;
+    protected Set<String> loadedKeys;
+    private Map<String, Object> pendingProperties;
 
     public Neo4jElement(final Neo4jGraph graphDb) {
         this.graphDb = graphDb;
@@ -27,26 +31,103 @@ public abstract class Neo4jElement<S extends Entity> implements Element {
 
     @Override
     public Object getProperty(final String key) {
-        if (rawElement.containsKey(key)) {
-            return rawElement.get(key).asObject();
+        S element = loadedKeys != null && loadedKeys.contains(key) ? rawElement : getRawElement();
+        if (element.containsKey(key)) {
+            return element.get(key).asObject();
         }
         return null;
     }
 
     @Override
     public Set<String> getPropertyKeys() {
-        return StreamSupport.stream(rawElement.keys().spliterator(), false).collect(Collectors.toSet());
+        return StreamSupport.stream(getRawElement().keys().spliterator(), false).collect(Collectors.toSet());
     }
 
     @Override
     public Object getId() {
+        if (pending) {
+            graphDb.flush();
+        }
         return rawElement.id();
     }
 
+    /**
+     * Returns true while the element has been created in batch mode but not yet sent to the server.
+     */
+    public boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * Returns the snapshot of the element, loading it first if the element was created from its id only.
+     */
     public S getRawElement() {
+        if (!hydrated) {
+            rawElement = load();
+            hydrated = true;
+        }
         return rawElement;
     }
 
+    /**
+     * Returns true unless the element was created from its id only, or with some of its properties, and has not been
+     * read completely since.
+     */
+    public boolean isHydrated() {
+        return hydrated;
+    }
+
+    /**
+     * Reads the snapshot of an element that was created from its id only.
+     */
+    protected abstract S load();
+
+    /**
+     * Replaces the snapshot with a complete one read from the server.
+     */
+    void refresh(S snapshot) {
+        rawElement = snapshot;
+        hydrated = true;
+    }
+
+    /**
+     * Returns the Neo4j id without loading a lazy element or flushing a pending one, whose id is -1.
+     */
+    long nativeId() {
+        return rawElement.id();
+    }
+
+    /**
+     * Records the write in the graph's write buffer when buffering is enabled. The caller is responsible for applying
+     * the write to {@link #rawElement} so that reads see it before it is flushed. Writes to a pending element only
+     * need to be applied locally since its creation sends all of its properties.
+     *
+     * @return false if buffering is disabled and the write must be sent immediately
+     */
+    protected boolean bufferProperty(String key, Object value) {
+        if (pending) {
+            return true;
+        }
+        WriteBuffer writeBuffer = graphDb.getWriteBuffer();
+        if (!writeBuffer.isBufferingProperties()) {
+            return false;
+        }
+        if (pendingProperties == null) {
+            pendingProperties = new HashMap<>();
+        }
+        pendingProperties.put(key, value);
+        if (writeBuffer.add(this)) {
+            graphDb.flush();
+        }
+        return true;
+    }
+
+    Map<String, Object> takePendingProperties() {
+        Map<String, Object> properties = pendingProperties;
+        pendingProperties = null;
+        return properties == null ? new HashMap<>() : properties;
+    }
+
     protected Relationship clone(Neo4jEdge edge, String key, Object value) {
         Relationship relationship = edge.getRawElement();
         Map<String, Value> properties = cloneProps(edge, key, value);
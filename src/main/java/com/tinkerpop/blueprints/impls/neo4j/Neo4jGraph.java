@@ -2,21 +2,44 @@ package com.tinkerpop.blueprints.impls.neo4j;
 
 import com.tinkerpop.blueprints.*;
 import com.tinkerpop.blueprints.impls.neo4j.iterable.EdgeIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.PagedEdgeIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.PagedElementIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.PagedVertexIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.ProjectedVertexIterable;
 import com.tinkerpop.blueprints.impls.neo4j.iterable.VertexIterable;
-import com.tinkerpop.blueprints.util.DefaultGraphQuery;
 import com.tinkerpop.blueprints.util.ExceptionFactory;
 import org.apache.commons.configuration.Configuration;
 import org.neo4j.driver.v1.*;
+import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.types.Entity;
 import org.neo4j.driver.v1.types.Node;
 import org.neo4j.driver.v1.types.Relationship;
 
 import java.io.File;
+import java.lang.reflect.Array;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, TransactionalGraph {
 
@@ -60,6 +83,13 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
         T wrap(S rawElement);
     }
 
+    /**
+     * Notified after the graph committed by itself because an auto-commit threshold was reached.
+     */
+    public interface CommitListener {
+        void committed(long mutations, long parameterBytes);
+    }
+
     public interface VertexWrapper<V extends Vertex> extends ElementWrapper<V, Node> {
     }
 
@@ -67,28 +97,453 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
     }
 
     private static VertexWrapper<Neo4jVertex> createDefaultVertexWrapper(final Neo4jGraph graph) {
-        return rawVertex -> new Neo4jVertex(rawVertex, graph);
+        return graph::wrapVertex;
     }
 
     private static EdgeWrapper<Neo4jEdge> createDefaultEdgeWrapper(final Neo4jGraph graph) {
-        return rawEdge -> new Neo4jEdge(rawEdge, graph);
+        return graph::wrapEdge;
     }
 
     protected Configuration config;
     protected final Driver driver;
     protected Session session;
     protected Optional<Transaction> tx = Optional.empty();
+    protected final int scanPageSize;
+    protected final WriteBuffer writeBuffer;
+    // Elements written by the open transaction, whose cache entries are dropped if it rolls back
+    private final Set<Long> writtenVertexIds = new HashSet<>();
+    private final Set<Long> writtenEdgeIds = new HashSet<>();
+    private final Set<Long> changedAdjacencyIds = new HashSet<>();
+    final Statements statements = new Statements();
+    protected final long autoCommitEvery;
+    protected final long autoCommitBytes;
+    private long uncommittedMutations = 0;
+    private long uncommittedBytes = 0;
+    private CommitListener commitListener;
+    protected final int identityMapSize;
+    protected final boolean lazyLoading;
+    protected final int readAheadSize;
+    private final LongObjectMap<Neo4jVertex> loadedVertices = new LongObjectMap<>();
+    private final LongObjectMap<Neo4jEdge> loadedEdges = new LongObjectMap<>();
+    protected final ElementCache<Node> vertexCache;
+    protected final ElementCache<Relationship> edgeCache;
+    protected final ElementCache<Adjacency> adjacencyCache;
 
     private VertexWrapper<? extends Vertex> vertexWrapper;
     private EdgeWrapper<? extends Edge> edgeWrapper;
 
+    /**
+     * Returns the open transaction, beginning one if needed. Buffered writes are flushed first so that the statement
+     * run on the returned transaction sees them.
+     */
     public Transaction withTx() {
         if (!tx.isPresent()) {
             tx = Optional.of(session.beginTransaction());
         }
+        writeBuffer.flush(tx.get());
         return tx.get();
     }
 
+    /**
+     * Returns the open transaction, or the session when there is none so that statements run in auto-commit mode
+     * without starting a transaction. Each such statement is a transaction of its own, so the identity map is cleared
+     * before it and only remembers the elements of one statement, e.g. one page of a paged scan.
+     */
+    public StatementRunner currentRunner() {
+        if (tx.isPresent() || !writeBuffer.isEmpty()) {
+            return withTx();
+        }
+        forgetLoadedElements();
+        return session;
+    }
+
+    /**
+     * Sends buffered writes to the server without committing them.
+     */
+    public void flush() {
+        if (!writeBuffer.isEmpty()) {
+            withTx();
+        }
+    }
+
+    WriteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+
+    // Identity map
+
+    /**
+     * Returns the wrapper already loaded for the node in this transaction, refreshed with the given snapshot, or a new
+     * wrapper that is remembered until the transaction ends. At most {@code identityMapSize} wrappers of each kind are
+     * remembered per transaction so that long scans keep a flat heap profile.
+     */
+    Neo4jVertex wrapVertex(Node node) {
+        Neo4jVertex vertex = loadedVertices.get(node.id());
+        if (vertex != null) {
+            vertex.refresh(node);
+            return vertex;
+        }
+        vertex = new Neo4jVertex(node, this);
+        remember(vertex);
+        return vertex;
+    }
+
+    Neo4jEdge wrapEdge(Relationship relationship) {
+        Neo4jEdge edge = loadedEdges.get(relationship.id());
+        if (edge != null) {
+            edge.refresh(relationship);
+            return edge;
+        }
+        edge = new Neo4jEdge(relationship, this);
+        remember(edge);
+        return edge;
+    }
+
+    void remember(Neo4jVertex vertex) {
+        if (loadedVertices.size() < identityMapSize) {
+            loadedVertices.put(vertex.nativeId(), vertex);
+        }
+    }
+
+    void remember(Neo4jEdge edge) {
+        if (loadedEdges.size() < identityMapSize) {
+            loadedEdges.put(edge.nativeId(), edge);
+        }
+    }
+
+    /**
+     * Returns the vertex with the given id without reading it: the wrapper loaded in this transaction, one built from
+     * a cached snapshot, or a lazy vertex whose labels and properties are read on first access.
+     */
+    Neo4jVertex lazyVertex(long id) {
+        Neo4jVertex vertex = loadedVertices.get(id);
+        if (vertex != null) {
+            return vertex;
+        }
+        Node node = vertexCache.get(id);
+        if (node != null) {
+            return wrapVertex(node);
+        }
+        vertex = new Neo4jVertex(id, this);
+        remember(vertex);
+        return vertex;
+    }
+
+    /**
+     * Returns the wrapper loaded for the node in this transaction, one built from a cached snapshot, or a vertex
+     * holding the projected node that loads its other properties on first access.
+     */
+    Neo4jVertex projectedVertex(Node node, Set<String> loadedKeys) {
+        Neo4jVertex vertex = loadedVertices.get(node.id());
+        if (vertex != null) {
+            return vertex;
+        }
+        Node cached = vertexCache.get(node.id());
+        if (cached != null) {
+            return wrapVertex(cached);
+        }
+        vertex = new Neo4jVertex(node, loadedKeys, this);
+        remember(vertex);
+        return vertex;
+    }
+
+    /**
+     * Edge counterpart of {@link #lazyVertex(long)}. The label and endpoint ids of the lazy edge may be null and -1
+     * when they are not known, in which case they are read on first access as well.
+     */
+    Neo4jEdge lazyEdge(long id, String label, long outId, long inId) {
+        Neo4jEdge edge = loadedEdges.get(id);
+        if (edge != null) {
+            return edge;
+        }
+        Relationship relationship = edgeCache.get(id);
+        if (relationship != null) {
+            return wrapEdge(relationship);
+        }
+        edge = new Neo4jEdge(id, label, outId, inId, this);
+        remember(edge);
+        return edge;
+    }
+
+    /**
+     * Returns true if expansions only read element ids and leave the properties to be loaded on first access.
+     */
+    boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    /**
+     * Returns the number of elements that iterables wrap ahead of the caller and hydrate together, or 0 if they do
+     * not read ahead.
+     */
+    public int getReadAheadSize() {
+        return readAheadSize;
+    }
+
+    private static final int MAX_IDS_PER_STATEMENT = 1000;
+
+    /**
+     * Loads the snapshots of the lazy vertices and edges among the given elements, using the element cache where it
+     * can and one {@code id(n) in {ids}} query per chunk of ids otherwise, so that reading their properties afterwards
+     * needs no round trip. Hydrated elements are left as they are.
+     */
+    public void hydrate(Iterable<? extends Element> elements) {
+        hydrate(elements, false);
+    }
+
+    /**
+     * Hydrates elements read ahead of a result that is still being streamed from the open transaction, see
+     * {@link #hydrate(Iterable)}. Running another statement on the transaction would make the driver buffer the rest
+     * of that result, so as long as the transaction has not written through this graph the snapshots are read on a
+     * session of their own, which sees the same committed data. Once it has written, they are read on the transaction
+     * so that its writes are seen, at the cost of buffering the result.
+     */
+    public void hydrateAhead(Iterable<? extends Element> elements) {
+        hydrate(elements, true);
+    }
+
+    private void hydrate(Iterable<? extends Element> elements, boolean ahead) {
+        Map<Long, List<Neo4jVertex>> vertices = new LinkedHashMap<>();
+        Map<Long, List<Neo4jEdge>> edges = new LinkedHashMap<>();
+        for (Element element : elements) {
+            if (element instanceof Neo4jVertex && !((Neo4jVertex) element).isHydrated()) {
+                Neo4jVertex vertex = (Neo4jVertex) element;
+                Node node = vertexCache.get(vertex.nativeId());
+                if (node != null) {
+                    vertex.refresh(node);
+                } else {
+                    vertices.computeIfAbsent(vertex.nativeId(), id -> new ArrayList<>()).add(vertex);
+                }
+            } else if (element instanceof Neo4jEdge && !((Neo4jEdge) element).isHydrated()) {
+                Neo4jEdge edge = (Neo4jEdge) element;
+                Relationship relationship = edgeCache.get(edge.nativeId());
+                if (relationship != null) {
+                    edge.refresh(relationship);
+                } else {
+                    edges.computeIfAbsent(edge.nativeId(), id -> new ArrayList<>()).add(edge);
+                }
+            }
+        }
+        if (vertices.isEmpty() && edges.isEmpty()) {
+            return;
+        }
+        if (ahead && !hasWritten()) {
+            try (Session aheadSession = driver.session()) {
+                loadSnapshots(vertices, edges, aheadSession);
+            }
+        } else {
+            loadSnapshots(vertices, edges, withTx());
+        }
+    }
+
+    private void loadSnapshots(Map<Long, List<Neo4jVertex>> vertices, Map<Long, List<Neo4jEdge>> edges, StatementRunner runner) {
+        forEachChunk(vertices.keySet(), ids -> {
+            StatementResult result = runner.run("match (n) where id(n) in {ids} return n", Values.parameters("ids", ids));
+            while (result.hasNext()) {
+                Node node = result.next().get(0).asNode();
+                vertexCache.put(node.id(), node);
+                vertices.get(node.id()).forEach(vertex -> vertex.refresh(node));
+            }
+        });
+        forEachChunk(edges.keySet(), ids -> {
+            StatementResult result = runner.run("match ()-[r]->() where id(r) in {ids} return r", Values.parameters("ids", ids));
+            while (result.hasNext()) {
+                Relationship relationship = result.next().get(0).asRelationship();
+                edgeCache.put(relationship.id(), relationship);
+                edges.get(relationship.id()).forEach(edge -> edge.refresh(relationship));
+            }
+        });
+    }
+
+    private static void forEachChunk(Collection<Long> ids, Consumer<List<Long>> action) {
+        List<Long> chunk = new ArrayList<>(Math.min(ids.size(), MAX_IDS_PER_STATEMENT));
+        for (Long id : ids) {
+            chunk.add(id);
+            if (chunk.size() == MAX_IDS_PER_STATEMENT) {
+                action.accept(chunk);
+                chunk = new ArrayList<>(MAX_IDS_PER_STATEMENT);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            action.accept(chunk);
+        }
+    }
+
+    private void forgetLoadedElements() {
+        loadedVertices.clear();
+        loadedEdges.clear();
+    }
+
+    // Element cache
+
+    /**
+     * Returns the cache of node snapshots behind {@link #getVertex(Object)}, which outlives transactions.
+     */
+    public ElementCache<Node> getVertexCache() {
+        return vertexCache;
+    }
+
+    /**
+     * Returns the cache of relationship snapshots behind {@link #getEdge(Object)}, which outlives transactions.
+     */
+    public ElementCache<Relationship> getEdgeCache() {
+        return edgeCache;
+    }
+
+    /**
+     * Drops the cached snapshot of an element written by this graph, and remembers it until the end of the
+     * transaction so that a snapshot cached from the transaction meanwhile is dropped as well if it rolls back.
+     */
+    void written(Neo4jVertex vertex) {
+        vertexWritten(vertex.nativeId());
+    }
+
+    void written(Neo4jEdge edge) {
+        edgeWritten(edge.nativeId());
+    }
+
+    private void vertexWritten(long id) {
+        if (id >= 0) {
+            vertexCache.invalidate(id);
+            writtenVertexIds.add(id);
+        }
+    }
+
+    private void edgeWritten(long id) {
+        if (id >= 0) {
+            edgeCache.invalidate(id);
+            writtenEdgeIds.add(id);
+        }
+    }
+
+    /**
+     * Returns true if the open transaction has written through this graph, or has buffered writes to send.
+     */
+    private boolean hasWritten() {
+        return !writeBuffer.isEmpty() || !writtenVertexIds.isEmpty() || !writtenEdgeIds.isEmpty()
+                || !changedAdjacencyIds.isEmpty();
+    }
+
+    /**
+     * Forgets the elements written by the transaction that just ended, dropping their cache entries if it failed.
+     */
+    private void transactionEnded(boolean rolledBack) {
+        if (rolledBack) {
+            writtenVertexIds.forEach(vertexCache::invalidate);
+            writtenEdgeIds.forEach(edgeCache::invalidate);
+            changedAdjacencyIds.forEach(adjacencyCache::invalidate);
+        }
+        writtenVertexIds.clear();
+        writtenEdgeIds.clear();
+        changedAdjacencyIds.clear();
+    }
+
+    /**
+     * Returns the cache of vertex expansions behind {@link Neo4jVertex#getEdges(Direction, String...)} and
+     * {@link Neo4jVertex#getVertices(Direction, String...)}. Its hits count the vertices that had cached expansions,
+     * whether or not the requested one was among them.
+     */
+    public ElementCache<?> getAdjacencyCache() {
+        return adjacencyCache;
+    }
+
+    boolean isCachingAdjacency() {
+        return adjacencyCache.isEnabled();
+    }
+
+    /**
+     * Returns the cached expansion of the vertex, or null if it was not read or has expired.
+     */
+    Adjacency.Expansion expansion(long vertexId, Direction direction, String[] labels) {
+        Adjacency adjacency = adjacencyCache.get(vertexId);
+        return adjacency == null ? null : adjacency.get(adjacencyCache.getTtlMillis(), direction, labels);
+    }
+
+    void expanded(long vertexId, Direction direction, String[] labels, Adjacency.Expansion expansion) {
+        adjacencyCache.update(vertexId, adjacency -> (adjacency == null ? Adjacency.EMPTY : adjacency).with(direction, labels, expansion));
+    }
+
+    /**
+     * Drops the cached expansions of a vertex that an edge was added to or removed from.
+     */
+    private void adjacencyChanged(Vertex vertex) {
+        if (vertex instanceof Neo4jVertex) {
+            adjacencyChanged(((Neo4jVertex) vertex).nativeId());
+        } else {
+            adjacencyChanged(toNativeId(vertex.getId()));
+        }
+    }
+
+    void adjacencyChanged(long vertexId) {
+        if (vertexId >= 0) {
+            adjacencyCache.invalidate(vertexId);
+            changedAdjacencyIds.add(vertexId);
+        }
+    }
+
+    /**
+     * Converts a Blueprints id into a Neo4j id, or returns -1 if it can not be one.
+     */
+    private static long toNativeId(Object id) {
+        if (id instanceof Number) {
+            return ((Number) id).longValue();
+        }
+        try {
+            return Long.parseLong(id.toString());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    public void setCommitListener(CommitListener commitListener) {
+        this.commitListener = commitListener;
+    }
+
+    /**
+     * Counts a mutation towards the auto-commit thresholds and commits once one of them is reached. The key and value
+     * are only used to estimate the size of the parameters sent for the mutation.
+     */
+    void mutated(String key, Object value) {
+        if (autoCommitEvery <= 0 && autoCommitBytes <= 0) {
+            return;
+        }
+        uncommittedMutations++;
+        uncommittedBytes += 16 + estimateSize(key) + estimateSize(value);
+        if ((autoCommitEvery > 0 && uncommittedMutations >= autoCommitEvery)
+                || (autoCommitBytes > 0 && uncommittedBytes >= autoCommitBytes)) {
+            long mutations = uncommittedMutations;
+            long parameterBytes = uncommittedBytes;
+            commit();
+            if (commitListener != null) {
+                commitListener.committed(mutations, parameterBytes);
+            }
+        }
+    }
+
+    private static long estimateSize(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 2L * ((String) value).length();
+        }
+        if (value instanceof Collection) {
+            long size = 0;
+            for (Object item : (Collection<?>) value) {
+                size += estimateSize(item);
+            }
+            return size;
+        }
+        if (value.getClass().isArray()) {
+            long size = 0;
+            for (int i = 0; i < Array.getLength(value); i++) {
+                size += estimateSize(Array.get(value, i));
+            }
+            return size;
+        }
+        return 8;
+    }
+
     public Neo4jGraph(final Configuration argConfig) {
         this.config = argConfig.subset("blueprints.neo4j");
 
@@ -103,6 +558,20 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
             }
         }
 
+        scanPageSize = config.getInt("scanPageSize", 0);
+        writeBuffer = new WriteBuffer(config.getInt("propertyBufferSize", 0), config.getInt("vertexBatchSize", 0),
+                config.getInt("edgeBatchSize", 0), statements);
+        autoCommitEvery = config.getLong("autoCommitEvery", 0);
+        autoCommitBytes = config.getLong("autoCommitBytes", 0);
+        identityMapSize = config.getInt("identityMapSize", 100000);
+        lazyLoading = config.getBoolean("lazyLoading", false);
+        readAheadSize = config.getInt("readAheadSize", 0);
+        int cacheSize = config.getInt("cacheSize", 0);
+        long cacheTtlMillis = config.getLong("cacheTtlMillis", 60000);
+        vertexCache = new ElementCache<>(cacheSize, cacheTtlMillis);
+        edgeCache = new ElementCache<>(cacheSize, cacheTtlMillis);
+        adjacencyCache = new ElementCache<>(config.getInt("adjacencyCacheSize", 0), cacheTtlMillis);
+
         String url = config.getString("url", "bolt://localhost:7687");
 
         String username = config.getString("username", "neo4j");
@@ -111,6 +580,7 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
 
         driver = GraphDatabase.driver(url, authToken, neo4jConfig.toConfig());
         session = driver.session();
+        readIndexedKeys();
 
         vertexWrapper = createDefaultVertexWrapper(this);
         edgeWrapper = createDefaultEdgeWrapper(this);
@@ -134,8 +604,23 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
     public static final String NODE_GLOBAL_INDEX = "INDEXED";
     public static final String NODE_GLOBAL_LABEL = "uie_node_type";
 
+    private static final Pattern INDEX_DESCRIPTION = Pattern.compile("INDEX ON :`?" + NODE_GLOBAL_INDEX + "`?\\(`?(.+?)`?\\)");
+
     private Set<String> indices = new HashSet();
 
+    /**
+     * Reads the keys of the schema indexes on the {@code INDEXED} label, so that a graph opened on an existing store
+     * knows the indexes created through earlier graphs.
+     */
+    private void readIndexedKeys() {
+        for (Record record : session.run("call db.indexes()").list()) {
+            Matcher matcher = INDEX_DESCRIPTION.matcher(record.get("description").asString());
+            if (matcher.matches()) {
+                indices.add(matcher.group(1));
+            }
+        }
+    }
+
     @Override
     public <T extends Element> void dropKeyIndex(String key, Class<T> elementClass) {
         if (Neo4jVertex.class.isAssignableFrom(elementClass)) {
@@ -163,6 +648,13 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
         return indices;
     }
 
+    /**
+     * Returns true if the store has an index on the vertex key, created by this graph or found when it was opened.
+     */
+    boolean isIndexed(String key) {
+        return indices.contains(key);
+    }
+
     // TransactionalGraph
 
     @Override
@@ -176,20 +668,31 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
 
     @Override
     public void commit() {
+        flush();
         tx.ifPresent(tx -> {
             tx.success();
             tx.close();
         });
         tx = Optional.empty();
+        uncommittedMutations = 0;
+        uncommittedBytes = 0;
+        forgetLoadedElements();
+        transactionEnded(false);
     }
 
     @Override
     public void rollback() {
+        writeBuffer.clear();
         tx.ifPresent(tx -> {
             tx.failure();
             tx.close();
         });
         tx = Optional.empty();
+        uncommittedMutations = 0;
+        uncommittedBytes = 0;
+        forgetLoadedElements();
+        // Snapshots read in the transaction may hold writes that were just discarded
+        transactionEnded(true);
     }
 
     @Override
@@ -199,10 +702,21 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
 
     @Override
     public Vertex addVertex(Object id) {
-        String statement = String.format("create (n:`%s`) return n", NODE_GLOBAL_INDEX);
-        StatementResult result = withTx().run(statement);
-        Node node = result.single().get(0).asNode();
-        return new Neo4jVertex(node, this);
+        Neo4jVertex vertex;
+        if (writeBuffer.isBatchingVertices()) {
+            vertex = new Neo4jVertex(this);
+            if (writeBuffer.addVertex(vertex)) {
+                flush();
+            }
+        } else {
+            StatementResult result = withTx().run(Statements.CREATE_NODE);
+            Node node = result.single().get(0).asNode();
+            vertex = new Neo4jVertex(node, this);
+            remember(vertex);
+            written(vertex);
+        }
+        mutated(null, null);
+        return vertex;
     }
 
     @Override
@@ -210,31 +724,96 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
         if (null == id) {
             throw ExceptionFactory.vertexIdCanNotBeNull();
         }
-        StatementResult result = withTx().run("match (n) where id(n) = {id} return n", Values.parameters("id", id));
+        long nodeId = toNativeId(id);
+        if (nodeId < 0) {
+            return null;
+        }
+        Neo4jVertex vertex = loadedVertices.get(nodeId);
+        if (vertex != null) {
+            return vertex;
+        }
+        Node node = readNode(nodeId);
+        return node == null ? null : wrapVertex(node);
+    }
+
+    /**
+     * Returns the snapshot of the node from the element cache or the server, or null if it does not exist.
+     */
+    Node readNode(long nodeId) {
+        Node node = vertexCache.get(nodeId);
+        if (node != null) {
+            return node;
+        }
+        StatementResult result = withTx().run("match (n) where id(n) = {id} return n", Values.parameters("id", nodeId));
         if (result.hasNext()) {
-            Node node = result.single().get(0).asNode();
-            return new Neo4jVertex(node, this);
+            node = result.single().get(0).asNode();
+            vertexCache.put(node.id(), node);
         }
-        return null;
+        return node;
     }
 
     @Override
     public void removeVertex(Vertex vertex) {
-        withTx().run("match (n) where id(n) = {id} detach delete n", Values.parameters("id", vertex.getId()));
+        if (vertex instanceof Neo4jVertex && writeBuffer.discard((Neo4jVertex) vertex)) {
+            return;
+        }
+        StatementResult result = withTx().run("match (n) where id(n) = {id} optional match (n)-[r]-(m) " +
+                "with n, collect(distinct id(m)) as neighbours, collect(distinct id(r)) as relationships " +
+                "detach delete n return neighbours, relationships", Values.parameters("id", vertex.getId()));
+        if (result.hasNext()) {
+            // The relationships of the node are gone as well, and its neighbours lost them
+            Record deleted = result.next();
+            for (Object neighbour : deleted.get(0).asList()) {
+                adjacencyChanged((Long) neighbour);
+            }
+            for (Object relationship : deleted.get(1).asList()) {
+                loadedEdges.remove((Long) relationship);
+                edgeWritten((Long) relationship);
+            }
+        }
+        loadedVertices.remove(toNativeId(vertex.getId()));
+        vertexWritten(toNativeId(vertex.getId()));
+        adjacencyChanged(toNativeId(vertex.getId()));
+        mutated(null, null);
     }
 
+    static final String NODE_ID_BOUNDS = "match (n) return min(id(n)), max(id(n))";
+    private static final String NODE_ID_RANGE = "unwind range({lo}, {hi}) as i match (n) where id(n) = i return n";
+    static final String RELATIONSHIP_ID_BOUNDS = "match ()-[r]->() return min(id(r)), max(id(r))";
+    private static final String RELATIONSHIP_ID_RANGE = "unwind range({lo}, {hi}) as i match ()-[r]->() where id(r) = i return r";
+
+    /**
+     * Streams every vertex, or with a positive {@code scanPageSize} walks them in pages of id seeks so that neither
+     * the server nor the transaction holds the whole scan.
+     */
     @Override
     public Iterable<Vertex> getVertices() {
+        if (scanPageSize > 0) {
+            return new PagedVertexIterable(NODE_ID_RANGE, NODE_ID_BOUNDS, Collections.emptyMap(), scanPageSize, this);
+        }
         StatementResult result = withTx().run("match (n) return n");
-        return new VertexIterable(result.list(record -> record.get(0).asNode()), this);
+        return new VertexIterable(result, this);
     }
 
+    /**
+     * Streams the vertices whose property has the given value. With a positive {@code scanPageSize} and a key indexed
+     * by {@link #createKeyIndex(String, Class, Parameter[])}, the matches are read in keyset pages, each of which runs
+     * the index lookup again; for other keys the vertices are read in pages of id seeks like {@link #getVertices()}.
+     */
     @Override
     public Iterable<Vertex> getVertices(String key, Object value) {
+        if (scanPageSize > 0 && isIndexed(key)) {
+            String statement = String.format("match (n:`%s`) where n.`%s` = {value} and id(n) > {last} return n order by id(n) limit {page}", NODE_GLOBAL_INDEX, key);
+            return new PagedVertexIterable(statement, Collections.singletonMap("value", value), scanPageSize, this);
+        }
+        if (scanPageSize > 0) {
+            String statement = String.format("unwind range({lo}, {hi}) as i match (n:`%s`) where id(n) = i and n.`%s` = {value} return n", NODE_GLOBAL_INDEX, key);
+            return new PagedVertexIterable(statement, NODE_ID_BOUNDS, Collections.singletonMap("value", value), scanPageSize, this);
+        }
         String statement = String.format("match (n:`%s`) where n.`%s` = {value} return n", NODE_GLOBAL_INDEX, key);
         Value params = Values.parameters("value", value);
         StatementResult result = withTx().run(statement, params);
-        return new VertexIterable(result.list(record -> record.get(0).asNode()), this);
+        return new VertexIterable(result, this);
     }
 
     @Override
@@ -242,44 +821,321 @@ public class Neo4jGraph implements KeyIndexableGraph, MetaGraph<Session>, Transa
         if (label == null) {
             throw ExceptionFactory.edgeLabelCanNotBeNull();
         }
-        String statement = String.format("match (a), (b) where id(a) = {ida} and id(b) = {idb} create (a)-[r:`%s`]->(b) return r", label);
-        Value params = Values.parameters("ida", outVertex.getId(), "idb", inVertex.getId());
-        StatementResult result = withTx().run(statement, params);
-        Relationship rel = result.single().get(0).asRelationship();
-        return new Neo4jEdge(rel, this);
+        Neo4jEdge edge;
+        if (writeBuffer.isBatchingEdges()) {
+            edge = new Neo4jEdge(outVertex, inVertex, label, this);
+            if (writeBuffer.addEdge(edge)) {
+                flush();
+            }
+        } else {
+            Value params = Values.parameters("ida", outVertex.getId(), "idb", inVertex.getId());
+            StatementResult result = withTx().run(statements.createRelationship(label), params);
+            Relationship rel = result.single().get(0).asRelationship();
+            edge = new Neo4jEdge(rel, this);
+            remember(edge);
+            written(edge);
+        }
+        adjacencyChanged(outVertex);
+        adjacencyChanged(inVertex);
+        mutated(label, null);
+        return edge;
     }
 
     @Override
     public Edge getEdge(Object id) {
-        StatementResult result = withTx().run("match ()-[r]->() where id(r) = {id} return r", Values.parameters("id", id));
+        if (null == id) {
+            throw ExceptionFactory.edgeIdCanNotBeNull();
+        }
+        long relationshipId = toNativeId(id);
+        if (relationshipId < 0) {
+            return null;
+        }
+        Neo4jEdge edge = loadedEdges.get(relationshipId);
+        if (edge != null) {
+            return edge;
+        }
+        Relationship relationship = readRelationship(relationshipId);
+        return relationship == null ? null : wrapEdge(relationship);
+    }
+
+    /**
+     * Edge counterpart of {@link #readNode(long)}.
+     */
+    Relationship readRelationship(long relationshipId) {
+        Relationship relationship = edgeCache.get(relationshipId);
+        if (relationship != null) {
+            return relationship;
+        }
+        StatementResult result = withTx().run("match ()-[r]->() where id(r) = {id} return r", Values.parameters("id", relationshipId));
         if (result.hasNext()) {
-            result.single().get(0).asRelationship();
+            relationship = result.single().get(0).asRelationship();
+            edgeCache.put(relationship.id(), relationship);
         }
-        return null;
+        return relationship;
     }
 
     @Override
     public void removeEdge(Edge edge) {
-        withTx().run("match ()-[r]->() where id(r) = {id} delete r", Values.parameters("id", edge.getId()));
+        if (edge instanceof Neo4jEdge && writeBuffer.discard((Neo4jEdge) edge)) {
+            return;
+        }
+        // The statement returns the endpoints, which a lazy edge could no longer load once the relationship is gone
+        StatementResult result = withTx().run("match (a)-[r]->(b) where id(r) = {id} delete r return id(a), id(b)",
+                Values.parameters("id", edge.getId()));
+        if (result.hasNext()) {
+            Record endpoints = result.next();
+            adjacencyChanged(endpoints.get(0).asLong());
+            adjacencyChanged(endpoints.get(1).asLong());
+        }
+        loadedEdges.remove(toNativeId(edge.getId()));
+        edgeWritten(toNativeId(edge.getId()));
+        mutated(null, null);
     }
 
+    /**
+     * Edge counterpart of {@link #getVertices()}.
+     */
     @Override
     public Iterable<Edge> getEdges() {
-        StatementResult result = withTx().run("match ()-[r]-() return r");
-        return new EdgeIterable(result.list(record -> record.get(0).asRelationship()), this);
+        if (scanPageSize > 0) {
+            return new PagedEdgeIterable(RELATIONSHIP_ID_RANGE, RELATIONSHIP_ID_BOUNDS, Collections.emptyMap(), scanPageSize, this);
+        }
+        StatementResult result = withTx().run("match ()-[r]->() return r");
+        return new EdgeIterable(result, this);
     }
 
+    /**
+     * Streams the edges whose property has the given value. Relationship properties are not indexed, so with a
+     * positive {@code scanPageSize} the edges are read in pages of id seeks like {@link #getEdges()}.
+     */
     @Override
     public Iterable<Edge> getEdges(String key, Object value) {
-        String statement = String.format("match ()-[r]-() where r.`%s` = {value} return r", key);
+        if (scanPageSize > 0) {
+            String statement = String.format("unwind range({lo}, {hi}) as i match ()-[r]->() where id(r) = i and r.`%s` = {value} return r", key);
+            return new PagedEdgeIterable(statement, RELATIONSHIP_ID_BOUNDS, Collections.singletonMap("value", value), scanPageSize, this);
+        }
+        String statement = String.format("match ()-[r]->() where r.`%s` = {value} return r", key);
         Value params = Values.parameters("value", value);
         StatementResult result = withTx().run(statement, params);
-        return new EdgeIterable(result.list(record -> record.get(0).asRelationship()), this);
+        return new EdgeIterable(result, this);
     }
 
     @Override
-    public GraphQuery query() {
-        return new DefaultGraphQuery(this);
+    public Neo4jGraphQuery query() {
+        return new Neo4jGraphQuery(this);
+    }
+
+    // Non-Blueprints API methods
+
+    /**
+     * Returns the vertices with the given ids in the order of the ids, with null for ids that do not exist. Vertices
+     * loaded in this transaction or found in the element cache need no query; the others are read with one
+     * {@code id(n) in {ids}} statement per chunk of ids.
+     */
+    public List<Vertex> getVertices(Collection<Long> ids) {
+        List<Vertex> vertices = new ArrayList<>(ids.size());
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (null == id) {
+                throw ExceptionFactory.vertexIdCanNotBeNull();
+            }
+            Vertex vertex = loadedVertices.get(id);
+            if (vertex == null) {
+                Node node = vertexCache.get(id);
+                if (node != null) {
+                    vertex = wrapVertex(node);
+                } else {
+                    missing.add(id);
+                }
+            }
+            vertices.add(vertex);
+        }
+        if (missing.isEmpty()) {
+            return vertices;
+        }
+        Map<Long, Vertex> loaded = new HashMap<>();
+        forEachChunk(missing, chunk -> {
+            StatementResult result = withTx().run("match (n) where id(n) in {ids} return n", Values.parameters("ids", chunk));
+            while (result.hasNext()) {
+                Node node = result.next().get(0).asNode();
+                vertexCache.put(node.id(), node);
+                loaded.put(node.id(), wrapVertex(node));
+            }
+        });
+        int i = 0;
+        for (Long id : ids) {
+            if (vertices.get(i) == null) {
+                vertices.set(i, loaded.get(id));
+            }
+            i++;
+        }
+        return vertices;
+    }
+
+    /**
+     * Edge counterpart of {@link #getVertices(Collection)}.
+     */
+    public List<Edge> getEdges(Collection<Long> ids) {
+        List<Edge> edges = new ArrayList<>(ids.size());
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (null == id) {
+                throw ExceptionFactory.edgeIdCanNotBeNull();
+            }
+            Edge edge = loadedEdges.get(id);
+            if (edge == null) {
+                Relationship relationship = edgeCache.get(id);
+                if (relationship != null) {
+                    edge = wrapEdge(relationship);
+                } else {
+                    missing.add(id);
+                }
+            }
+            edges.add(edge);
+        }
+        if (missing.isEmpty()) {
+            return edges;
+        }
+        Map<Long, Edge> loaded = new HashMap<>();
+        forEachChunk(missing, chunk -> {
+            StatementResult result = withTx().run("match ()-[r]->() where id(r) in {ids} return r", Values.parameters("ids", chunk));
+            while (result.hasNext()) {
+                Relationship relationship = result.next().get(0).asRelationship();
+                edgeCache.put(relationship.id(), relationship);
+                loaded.put(relationship.id(), wrapEdge(relationship));
+            }
+        });
+        int i = 0;
+        for (Long id : ids) {
+            if (edges.get(i) == null) {
+                edges.set(i, loaded.get(id));
+            }
+            i++;
+        }
+        return edges;
+    }
+
+    /**
+     * Like {@link #getVertices(String, Object)}, but only reads the labels and the given properties of the vertices.
+     * Any other property is loaded when first read.
+     */
+    public Iterable<Vertex> getVertices(String key, Object value, String... fetchKeys) {
+        Set<String> keys = new HashSet<>(Arrays.asList(fetchKeys));
+        VertexWrapper<Neo4jVertex> wrapper = node -> projectedVertex(node, keys);
+        String match = String.format("match (n:`%s`) where n.`%s` = {value} ", NODE_GLOBAL_INDEX, key);
+        String returnClause = ProjectedVertexIterable.returnClause("n", fetchKeys);
+        if (scanPageSize > 0) {
+            // Paged like getVertices(key, value)
+            String statement = isIndexed(key)
+                    ? match + "and id(n) > {last} " + returnClause + " order by id(n) limit {page}"
+                    : "unwind range({lo}, {hi}) as i " + match + "and id(n) = i " + returnClause;
+            String bounds = isIndexed(key) ? null : NODE_ID_BOUNDS;
+            return new PagedElementIterable<Vertex, Node>(statement, bounds, Collections.singletonMap("value", value), scanPageSize, this, wrapper) {
+                @Override
+                protected Node extract(Record record) {
+                    return ProjectedVertexIterable.extractNode(record);
+                }
+            };
+        }
+        StatementResult result = withTx().run(match + returnClause, Values.parameters("value", value));
+        return new ProjectedVertexIterable(result, this, wrapper);
+    }
+
+    /**
+     * Returns the ids of the vertices whose property has the given value, without reading the vertices.
+     */
+    public long[] getVertexIds(String key, Object value) {
+        String statement = String.format("match (n:`%s`) where n.`%s` = {value} return id(n)", NODE_GLOBAL_INDEX, key);
+        return idStream(withTx().run(statement, Values.parameters("value", value))).toArray();
+    }
+
+    /**
+     * Streams the first column of a result whose rows hold element ids.
+     */
+    static LongStream idStream(StatementResult result) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(result, Spliterator.ORDERED), false)
+                .mapToLong(record -> record.get(0).asLong());
+    }
+
+    /**
+     * Returns the number of nodes, which Neo4j reads from its count store.
+     */
+    public long countVertices() {
+        return currentRunner().run("match (n) return count(n)").single().get(0).asLong();
+    }
+
+    /**
+     * Returns the number of relationships, which Neo4j reads from its count store.
+     */
+    public long countEdges() {
+        return currentRunner().run("match ()-[r]->() return count(r)").single().get(0).asLong();
+    }
+
+    private static final int DEFAULT_PARALLEL_CHUNK_SIZE = 10000;
+
+    /**
+     * Scans every vertex using {@code partitions} worker threads, each on its own session from the driver pool. The
+     * consumer is called concurrently and must be thread-safe. Vertices are read outside of this graph's transaction,
+     * are not added to its identity map and should only be used for their id and properties inside the consumer,
+     * since the graph itself is not thread-safe.
+     */
+    public void parallelVertices(int partitions, Consumer<? super Vertex> consumer) {
+        parallelScan(NODE_ID_BOUNDS, NODE_ID_RANGE, partitions,
+                record -> consumer.accept(new Neo4jVertex(record.get(0).asNode(), this)));
+    }
+
+    /**
+     * Edge counterpart of {@link #parallelVertices(int, Consumer)}.
+     */
+    public void parallelEdges(int partitions, Consumer<? super Edge> consumer) {
+        parallelScan(RELATIONSHIP_ID_BOUNDS, RELATIONSHIP_ID_RANGE, partitions,
+                record -> consumer.accept(new Neo4jEdge(record.get(0).asRelationship(), this)));
+    }
+
+    /**
+     * Splits the id space between the smallest and largest id into one range per partition. Each range is walked in
+     * chunks of id seeks, which unlike a range predicate on id() do not scan the whole store once per partition.
+     */
+    private void parallelScan(String boundsStatement, String chunkStatement, int partitions, Consumer<Record> action) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        Record bounds;
+        try (Session boundsSession = driver.session()) {
+            bounds = boundsSession.run(boundsStatement).single();
+        }
+        if (bounds.get(0).isNull()) {
+            return;
+        }
+        long min = bounds.get(0).asLong();
+        long max = bounds.get(1).asLong();
+        long span = (max - min) / partitions + 1;
+        int chunkSize = scanPageSize > 0 ? scanPageSize : DEFAULT_PARALLEL_CHUNK_SIZE;
+
+        ForkJoinPool pool = new ForkJoinPool(partitions);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions);
+            for (long lo = min; lo <= max; lo += span) {
+                final long from = lo;
+                final long to = Math.min(lo + span - 1, max);
+                tasks.add(pool.submit(() -> {
+                    try (Session rangeSession = driver.session()) {
+                        for (long chunk = from; chunk <= to; chunk += chunkSize) {
+                            Value params = Values.parameters("lo", chunk, "hi", Math.min(chunk + chunkSize - 1, to));
+                            StatementResult result = rangeSession.run(chunkStatement, params);
+                            while (result.hasNext()) {
+                                action.accept(result.next());
+                            }
+                        }
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
     }
 
     @Override
@@ -0,0 +1,318 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Streams GraphML or GraphSON into a {@link Neo4jBatchGraph} without building the document in memory, committing
+ * every {@link Neo4jBatchGraph#getBufferSize()} elements.
+ * <p>
+ * Every commit records the number of elements read so far in the id map, together with the ids of the commit, see
+ * {@link Neo4jBatchGraph#markProgress(long)}. Importing the same input again skips the elements recorded there and
+ * continues with the next one, so resuming needs the id map of the interrupted import, i.e. a batch graph opened with
+ * {@code blueprints.neo4j.idMapFile}. Such a batch graph also records each commit in a checkpoint node written in the
+ * committed transaction, from which it recovers the ids of a commit that the id map missed because the import died
+ * right after Neo4j committed, so no element is imported twice. The node is removed once the import completes.
+ * <p>
+ * A checkpoint file records the same position after each commit, and whether the import completed. Resuming with an
+ * id map that is behind the checkpoint file fails, since it is not the id map of the interrupted import.
+ * <p>
+ * Vertices must appear before the edges that reference them, which is how Blueprints writes both formats.
+ */
+public class Neo4jGraphImporter {
+
+    private static final Logger logger = Logger.getLogger(Neo4jGraphImporter.class.getName());
+
+    private static final String DEFAULT_EDGE_LABEL = "_default";
+
+    private final Neo4jBatchGraph graph;
+    private final Path checkpointFile;
+
+    private long resumeOffset = 0;
+    private long offset = 0;
+    private long uncommitted = 0;
+
+    public Neo4jGraphImporter(final Neo4jBatchGraph graph, final Path checkpointFile) {
+        this.graph = graph;
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Imports a GraphML document.
+     *
+     * @return the number of elements in the input
+     */
+    public long importGraphML(final InputStream input) throws IOException {
+        start();
+        Map<String, String> keyNames = new HashMap<>();
+        Map<String, String> keyTypes = new HashMap<>();
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(input, "UTF-8");
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (reader.getLocalName()) {
+                    case "key":
+                        String keyId = reader.getAttributeValue(null, "id");
+                        keyNames.put(keyId, reader.getAttributeValue(null, "attr.name"));
+                        keyTypes.put(keyId, reader.getAttributeValue(null, "attr.type"));
+                        break;
+                    case "node":
+                        String vertexId = reader.getAttributeValue(null, "id");
+                        vertex(vertexId, readGraphMLData(reader, "node", keyNames, keyTypes));
+                        break;
+                    case "edge":
+                        String edgeId = reader.getAttributeValue(null, "id");
+                        String source = reader.getAttributeValue(null, "source");
+                        String target = reader.getAttributeValue(null, "target");
+                        String label = reader.getAttributeValue(null, "label");
+                        Map<String, Object> properties = readGraphMLData(reader, "edge", keyNames, keyTypes);
+                        if (label == null) {
+                            Object labelProperty = properties.remove("label");
+                            label = labelProperty == null ? DEFAULT_EDGE_LABEL : labelProperty.toString();
+                        }
+                        edge(edgeId, source, target, label, properties);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+        finish();
+        return offset;
+    }
+
+    private Map<String, Object> readGraphMLData(XMLStreamReader reader, String element, Map<String, String> keyNames,
+                                                Map<String, String> keyTypes) throws XMLStreamException {
+        Map<String, Object> properties = new HashMap<>();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "data".equals(reader.getLocalName())) {
+                String key = reader.getAttributeValue(null, "key");
+                String text = reader.getElementText();
+                properties.put(keyNames.getOrDefault(key, key), typedValue(text, keyTypes.get(key)));
+            } else if (event == XMLStreamConstants.END_ELEMENT && element.equals(reader.getLocalName())) {
+                break;
+            }
+        }
+        return properties;
+    }
+
+    private static Object typedValue(String text, String type) {
+        if (type == null) {
+            return text;
+        }
+        switch (type) {
+            case "int":
+                return Integer.valueOf(text.trim());
+            case "long":
+                return Long.valueOf(text.trim());
+            case "float":
+                return Float.valueOf(text.trim());
+            case "double":
+                return Double.valueOf(text.trim());
+            case "boolean":
+                return Boolean.valueOf(text.trim());
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * Imports a GraphSON document in any of the Blueprints modes.
+     *
+     * @return the number of elements in the input
+     */
+    public long importGraphSON(final InputStream input) throws IOException {
+        start();
+        try (JsonParser parser = new JsonFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("GraphSON input must be a JSON object");
+            }
+            boolean extended = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("mode".equals(field)) {
+                    extended = "EXTENDED".equals(parser.getText());
+                } else if ("vertices".equals(field) || "edges".equals(field)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Map<String, Object> element = readGraphSONObject(parser, extended);
+                        Object id = element.remove("_id");
+                        element.remove("_type");
+                        if ("vertices".equals(field)) {
+                            vertex(id, element);
+                        } else {
+                            Object outId = element.remove("_outV");
+                            Object inId = element.remove("_inV");
+                            Object label = element.remove("_label");
+                            edge(id, outId, inId, label == null ? DEFAULT_EDGE_LABEL : label.toString(), element);
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        finish();
+        return offset;
+    }
+
+    private static Map<String, Object> readGraphSONObject(JsonParser parser, boolean extended) throws IOException {
+        Map<String, Object> object = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            Object value = readGraphSONValue(parser);
+            object.put(name, extended && !name.startsWith("_") ? decodeTyped(value) : value);
+        }
+        return object;
+    }
+
+    private static Object readGraphSONValue(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case START_OBJECT:
+                return readGraphSONObject(parser, false);
+            case START_ARRAY:
+                List<Object> list = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(readGraphSONValue(parser));
+                }
+                return list;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return parser.getBooleanValue();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Unwraps the {@code {"type": ..., "value": ...}} objects of the EXTENDED mode.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object decodeTyped(Object value) {
+        if (!(value instanceof Map) || !((Map) value).containsKey("type")) {
+            return value;
+        }
+        Map<String, Object> typed = (Map<String, Object>) value;
+        Object raw = typed.get("value");
+        switch (String.valueOf(typed.get("type"))) {
+            case "integer":
+                return ((Number) raw).intValue();
+            case "long":
+                return ((Number) raw).longValue();
+            case "float":
+                return ((Number) raw).floatValue();
+            case "double":
+                return ((Number) raw).doubleValue();
+            case "list":
+                List<Object> list = new ArrayList<>();
+                for (Object item : (List<Object>) raw) {
+                    list.add(decodeTyped(item));
+                }
+                return list;
+            case "map":
+                Map<String, Object> map = new LinkedHashMap<>();
+                ((Map<String, Object>) raw).forEach((k, v) -> map.put(k, decodeTyped(v)));
+                return map;
+            default:
+                return raw;
+        }
+    }
+
+    private void vertex(Object id, Map<String, Object> properties) throws IOException {
+        if (offset++ < resumeOffset) {
+            return;
+        }
+        properties.values().removeIf(v -> v == null);
+        graph.markProgress(offset);
+        graph.addVertex(id, properties);
+        added();
+    }
+
+    private void edge(Object id, Object outId, Object inId, String label, Map<String, Object> properties) throws IOException {
+        if (offset++ < resumeOffset) {
+            return;
+        }
+        properties.values().removeIf(v -> v == null);
+        graph.markProgress(offset);
+        graph.addEdge(id, outId, inId, label, properties);
+        added();
+    }
+
+    private void added() throws IOException {
+        if (++uncommitted >= graph.getBufferSize()) {
+            checkpoint(false);
+        }
+    }
+
+    private void start() throws IOException {
+        offset = 0;
+        uncommitted = 0;
+        resumeOffset = graph.getCommittedProgress();
+        if (Files.exists(checkpointFile)) {
+            Properties checkpoint = new Properties();
+            try (Reader reader = Files.newBufferedReader(checkpointFile)) {
+                checkpoint.load(reader);
+            }
+            long checkpointOffset = Long.parseLong(checkpoint.getProperty("offset", "0"));
+            if (resumeOffset < checkpointOffset) {
+                throw new IllegalStateException("The id map recorded " + resumeOffset + " elements but the checkpoint " +
+                        "recorded " + checkpointOffset + "; resuming requires the id map file of the interrupted import");
+            }
+        }
+        if (resumeOffset > 0) {
+            logger.info("Resuming import after " + resumeOffset + " elements");
+        }
+    }
+
+    private void finish() throws IOException {
+        checkpoint(true);
+        graph.removeCheckpoint();
+    }
+
+    private void checkpoint(boolean complete) throws IOException {
+        graph.commit();
+        uncommitted = 0;
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("offset", Long.toString(graph.getCommittedProgress()));
+        checkpoint.setProperty("complete", Boolean.toString(complete));
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            checkpoint.store(out, "Neo4jGraphImporter checkpoint");
+        }
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.EdgeIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.PagedEdgeIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.PagedVertexIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.VertexIterable;
+import com.tinkerpop.blueprints.util.DefaultGraphQuery;
+import com.tinkerpop.blueprints.util.StringFactory;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.summary.Plan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs a graph query as a single Cypher statement. When a condition is on a key indexed with
+ * {@link Neo4jGraph#createKeyIndex(String, Class, com.tinkerpop.blueprints.Parameter[])}, vertices are matched on the
+ * {@code INDEXED} label so that the schema index serves it; otherwise every node is matched, including nodes created
+ * outside of this graph, which do not carry the label. Has containers whose predicate Cypher can not evaluate are checked on the client, in
+ * which case the limit is applied on the client as well.
+ * <p>
+ * Results can be sorted on the server with {@link #orderBy(String, boolean)}, which combined with a limit returns
+ * the top elements without reading the others. Without an order or a limit and with a positive {@code scanPageSize},
+ * results are read in pages like {@link Neo4jGraph#getVertices(String, Object)} and {@link Neo4jGraph#getEdges()}.
+ */
+public class Neo4jGraphQuery extends DefaultGraphQuery {
+
+    private final Neo4jGraph graphDb;
+    private String orderKey;
+    private boolean descending;
+
+    public Neo4jGraphQuery(final Neo4jGraph graphDb) {
+        super(graphDb);
+        this.graphDb = graphDb;
+    }
+
+    /**
+     * Sorts the results on the given property, or on the element id for the reserved {@code id} key. Elements
+     * without the property are left out, as Cypher would otherwise sort them first in descending order.
+     */
+    public Neo4jGraphQuery orderBy(String key, boolean descending) {
+        this.orderKey = key;
+        this.descending = descending;
+        return this;
+    }
+
+    @Override
+    public Neo4jGraphQuery limit(int limit) {
+        super.limit(limit);
+        return this;
+    }
+
+    @Override
+    public Iterable<Vertex> vertices() {
+        List<HasContainer> clientSide = new ArrayList<>();
+        WhereClause where = where("n", false, clientSide);
+        String match = vertexMatch();
+        if (clientSide.isEmpty() && limit == Integer.MAX_VALUE && orderKey == null && graphDb.scanPageSize > 0) {
+            if (hasIndexedKey()) {
+                where.add("id(n) > {last}");
+                String statement = match + where + "return n order by id(n) limit {page}";
+                return new PagedVertexIterable(statement, where.getParameters(), graphDb.scanPageSize, graphDb);
+            }
+            where.add("id(n) = i");
+            String statement = "unwind range({lo}, {hi}) as i " + match + where + "return n";
+            return new PagedVertexIterable(statement, Neo4jGraph.NODE_ID_BOUNDS, where.getParameters(), graphDb.scanPageSize, graphDb);
+        }
+        String statement = vertexStatement(where, clientSide);
+        StatementResult result = graphDb.withTx().run(statement, where.getParameters());
+        if (clientSide.isEmpty()) {
+            return new VertexIterable(result, graphDb);
+        }
+        return filter(result, clientSide, record -> graphDb.wrapVertex(record.get(0).asNode()));
+    }
+
+    @Override
+    public Iterable<Edge> edges() {
+        List<HasContainer> clientSide = new ArrayList<>();
+        WhereClause where = where("r", true, clientSide);
+        String match = "match ()-[r]->() ";
+        if (clientSide.isEmpty() && limit == Integer.MAX_VALUE && orderKey == null && graphDb.scanPageSize > 0) {
+            where.add("id(r) = i");
+            String statement = "unwind range({lo}, {hi}) as i " + match + where + "return r";
+            return new PagedEdgeIterable(statement, Neo4jGraph.RELATIONSHIP_ID_BOUNDS, where.getParameters(), graphDb.scanPageSize, graphDb);
+        }
+        String statement = match + where + "return r" + orderClause("r", true) + limitClause(where, clientSide);
+        StatementResult result = graphDb.withTx().run(statement, where.getParameters());
+        if (clientSide.isEmpty()) {
+            return new EdgeIterable(result, graphDb);
+        }
+        return filter(result, clientSide, record -> graphDb.wrapEdge(record.get(0).asRelationship()));
+    }
+
+    /**
+     * Returns true if some has container is on a key indexed in the store, in which case keyset pages are served by
+     * the index; otherwise pages seek ranges of ids so that the vertices are read once.
+     */
+    private boolean hasIndexedKey() {
+        for (HasContainer hasContainer : hasContainers) {
+            if (graphDb.isIndexed(hasContainer.key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if Neo4j plans the vertex query with an index, according to the plan returned by {@code explain}.
+     * The query is not run. Only the statement of {@link #vertices()} is inspected, not the one of {@link #edges()}.
+     */
+    public boolean usesIndex() {
+        List<HasContainer> clientSide = new ArrayList<>();
+        WhereClause where = where("n", false, clientSide);
+        String statement = "explain " + vertexStatement(where, clientSide);
+        return usesIndex(graphDb.withTx().run(statement, where.getParameters()).consume().plan());
+    }
+
+    private static boolean usesIndex(Plan plan) {
+        if (plan.operatorType().contains("Index")) {
+            return true;
+        }
+        for (Plan child : plan.children()) {
+            if (usesIndex(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches the nodes carrying the {@code INDEXED} label only if the label lets an index serve a condition.
+     */
+    private String vertexMatch() {
+        return hasIndexedKey() ? String.format("match (n:`%s`) ", Neo4jGraph.NODE_GLOBAL_INDEX) : "match (n) ";
+    }
+
+    private String vertexStatement(WhereClause where, List<HasContainer> clientSide) {
+        return vertexMatch() + where + "return n" + orderClause("n", false) + limitClause(where, clientSide);
+    }
+
+    private String orderClause(String variable, boolean relationship) {
+        if (orderKey == null) {
+            return "";
+        }
+        return " order by " + WhereClause.expression(variable, orderKey, relationship) + (descending ? " desc" : "");
+    }
+
+    /**
+     * Counts the matching vertices on the server, or on the client if some has container can not be translated.
+     */
+    public long vertexCount() {
+        List<HasContainer> clientSide = new ArrayList<>();
+        WhereClause where = where("n", false, clientSide);
+        if (!clientSide.isEmpty()) {
+            return count(vertices());
+        }
+        String statement = vertexMatch() + where + "return count(n)";
+        return Math.min(graphDb.withTx().run(statement, where.getParameters()).single().get(0).asLong(), limit);
+    }
+
+    /**
+     * Edge counterpart of {@link #vertexCount()}.
+     */
+    public long edgeCount() {
+        List<HasContainer> clientSide = new ArrayList<>();
+        WhereClause where = where("r", true, clientSide);
+        if (!clientSide.isEmpty()) {
+            return count(edges());
+        }
+        String statement = "match ()-[r]->() " + where + "return count(r)";
+        return Math.min(graphDb.withTx().run(statement, where.getParameters()).single().get(0).asLong(), limit);
+    }
+
+    private static long count(Iterable<?> elements) {
+        long count = 0;
+        for (Object ignored : elements) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Translates the has containers into conditions on {@code variable}, adding those that can not be translated to
+     * {@code clientSide}.
+     */
+    private WhereClause where(String variable, boolean relationship, List<HasContainer> clientSide) {
+        WhereClause where = new WhereClause();
+        for (HasContainer hasContainer : hasContainers) {
+            String property = WhereClause.expression(variable, hasContainer.key, relationship);
+            if (!where.add(property, hasContainer.predicate, hasContainer.value)) {
+                clientSide.add(hasContainer);
+            }
+        }
+        if (orderKey != null && !StringFactory.ID.equals(orderKey)) {
+            where.add(WhereClause.expression(variable, orderKey, relationship) + " is not null");
+        }
+        return where;
+    }
+
+    private String limitClause(WhereClause where, List<HasContainer> clientSide) {
+        if (!clientSide.isEmpty() || limit == Integer.MAX_VALUE) {
+            return "";
+        }
+        where.parameter("limit", limit);
+        return " limit {limit}";
+    }
+
+    /**
+     * Streams the elements that pass the client side has containers, up to the limit of the query.
+     */
+    private <T extends Element> Iterable<T> filter(StatementResult result, List<HasContainer> clientSide,
+                                                   Function<Record, T> element) {
+        return () -> StreamSupport.stream(Spliterators.spliteratorUnknownSize(result, Spliterator.ORDERED), false)
+                .map(element)
+                .filter(e -> clientSide.stream().allMatch(hasContainer -> hasContainer.isLegal(e)))
+                .limit(limit)
+                .iterator();
+    }
+
+}
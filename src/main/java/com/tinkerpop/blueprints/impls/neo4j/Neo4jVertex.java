@@ -5,14 +5,23 @@ import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.VertexQuery;
 import com.tinkerpop.blueprints.impls.neo4j.iterable.EdgeIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.LazyEdgeIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.LazyVertexIterable;
 import com.tinkerpop.blueprints.impls.neo4j.iterable.VertexIterable;
-import com.tinkerpop.blueprints.util.DefaultVertexQuery;
 import com.tinkerpop.blueprints.util.ElementHelper;
+import com.tinkerpop.blueprints.util.ExceptionFactory;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.StatementResult;
 import org.neo4j.driver.v1.Value;
 import org.neo4j.driver.v1.Values;
 import org.neo4j.driver.v1.types.Node;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -24,30 +33,82 @@ public class Neo4jVertex extends Neo4jElement<Node> implements Vertex {
         this.rawElement = node;
     }
 
+    /**
+     * Creates a pending vertex whose creation is deferred until the graph flushes its write buffer.
+     */
+    Neo4jVertex(final Neo4jGraph graphDb) {
+        super(graphDb);
+        this.rawElement = new InternalNode(-1, Collections.singletonList(Neo4jGraph.NODE_GLOBAL_INDEX), Collections.emptyMap());
+        this.pending = true;
+    }
+
+    /**
+     * Creates a vertex from its id only. Its labels and properties are loaded when first read.
+     */
+    Neo4jVertex(final long id, final Neo4jGraph graphDb) {
+        super(graphDb);
+        this.rawElement = new InternalNode(id);
+        this.hydrated = false;
+    }
+
+    /**
+     * Creates a vertex from a node that only carries the given keys. Other properties are loaded when first read.
+     */
+    Neo4jVertex(Node node, final Set<String> loadedKeys, final Neo4jGraph graphDb) {
+        super(graphDb);
+        this.rawElement = node;
+        this.loadedKeys = loadedKeys;
+        this.hydrated = false;
+    }
+
+    @Override
+    protected Node load() {
+        Node node = graphDb.readNode(nativeId());
+        if (node == null) {
+            throw ExceptionFactory.vertexWithIdDoesNotExist(nativeId());
+        }
+        return node;
+    }
+
+    /**
+     * Patches the id assigned by the server into a pending vertex.
+     */
+    void created(long id) {
+        rawElement = new InternalNode(id, getLabels(), rawElement.asMap(v -> Values.value(v)));
+        pending = false;
+        graphDb.remember(this);
+        graphDb.written(this);
+    }
+
     @Override
     public Iterable<Edge> getEdges(Direction direction, String... labels) {
         if (labels == null) {
             labels = new String[0];
         }
 
-        StringBuilder sb = new StringBuilder("match (n)");
-        if (direction == Direction.IN) {
-            sb.append("<");
-        }
-        sb.append("-[r]-");
-        if (direction == Direction.OUT) {
-            sb.append(">");
+        if (graphDb.isCachingAdjacency()) {
+            Adjacency.Expansion expansion = graphDb.expansion(nativeId(), direction, labels);
+            if (expansion != null && graphDb.isLazyLoading()) {
+                return Arrays.stream(expansion.relationshipIds).mapToObj(id -> (Edge) graphDb.lazyEdge(id, null, -1, -1)).collect(Collectors.toList());
+            }
+            if (expansion != null) {
+                List<Long> ids = Arrays.stream(expansion.relationshipIds).boxed().collect(Collectors.toList());
+                return graphDb.getEdges(ids).stream().filter(Objects::nonNull).collect(Collectors.toList());
+            }
+            List<Edge> edges = new ArrayList<>();
+            expand(direction, labels, edges, null);
+            return edges;
         }
-        sb.append("() where id(n) = {id} ");
-        if (labels.length > 0) {
-            sb.append("and type(r) in {relTypes} ");
-        }
-        sb.append(" return r");
 
         Value params = Values.parameters("id", getId(), "relTypes", labels);
 
-        StatementResult result = graphDb.withTx().run(sb.toString(), params);
-        return new EdgeIterable(result.list(record -> record.get(0).asRelationship()), graphDb);
+        if (graphDb.isLazyLoading()) {
+            String statement = matchStatement(direction, labels) + "return id(r), type(r), id(startNode(r)), id(endNode(r))";
+            StatementResult result = graphDb.withTx().run(statement, params);
+            return new LazyEdgeIterable(result, graphDb, r -> graphDb.lazyEdge(r.id(), r.type(), r.startNodeId(), r.endNodeId()));
+        }
+        StatementResult result = graphDb.withTx().run(matchStatement(direction, labels) + "return r", params);
+        return new EdgeIterable(result, graphDb);
     }
 
     @Override
@@ -56,6 +117,31 @@ public class Neo4jVertex extends Neo4jElement<Node> implements Vertex {
             labels = new String[0];
         }
 
+        if (graphDb.isCachingAdjacency()) {
+            Adjacency.Expansion expansion = graphDb.expansion(nativeId(), direction, labels);
+            if (expansion != null && graphDb.isLazyLoading()) {
+                return Arrays.stream(expansion.neighbourIds).mapToObj(id -> (Vertex) graphDb.lazyVertex(id)).collect(Collectors.toList());
+            }
+            if (expansion != null) {
+                List<Long> ids = Arrays.stream(expansion.neighbourIds).boxed().collect(Collectors.toList());
+                return graphDb.getVertices(ids).stream().filter(Objects::nonNull).collect(Collectors.toList());
+            }
+            List<Vertex> vertices = new ArrayList<>();
+            expand(direction, labels, null, vertices);
+            return vertices;
+        }
+
+        Value params = Values.parameters("id", getId(), "relTypes", labels);
+
+        if (graphDb.isLazyLoading()) {
+            StatementResult result = graphDb.withTx().run(matchStatement(direction, labels) + "return id(b)", params);
+            return new LazyVertexIterable(result, graphDb, node -> graphDb.lazyVertex(node.id()));
+        }
+        StatementResult result = graphDb.withTx().run(matchStatement(direction, labels) + "return b", params);
+        return new VertexIterable(result, graphDb);
+    }
+
+    private static String matchStatement(Direction direction, String[] labels) {
         StringBuilder sb = new StringBuilder("match (a)");
         if (direction == Direction.IN) {
             sb.append("<");
@@ -68,17 +154,45 @@ public class Neo4jVertex extends Neo4jElement<Node> implements Vertex {
         if (labels.length > 0) {
             sb.append("and type(r) in {relTypes} ");
         }
-        sb.append("return b");
+        return sb.toString();
+    }
 
+    /**
+     * Reads an expansion from the server into the adjacency cache, adding the edges and neighbours to whichever of
+     * the lists is given. With lazy loading only the ids are read.
+     */
+    private void expand(Direction direction, String[] labels, List<Edge> edges, List<Vertex> vertices) {
         Value params = Values.parameters("id", getId(), "relTypes", labels);
-
-        StatementResult result = graphDb.withTx().run(sb.toString(), params);
-        return new VertexIterable(result.list(record -> record.get(0).asNode()), graphDb);
+        String columns = graphDb.isLazyLoading() ? "return id(r), type(r), id(startNode(r)), id(endNode(r)), id(b)" : "return r, b";
+        List<Record> records = graphDb.withTx().run(matchStatement(direction, labels) + columns, params).list();
+        long[] relationshipIds = new long[records.size()];
+        long[] neighbourIds = new long[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            Neo4jEdge edge;
+            Neo4jVertex neighbour;
+            if (graphDb.isLazyLoading()) {
+                edge = graphDb.lazyEdge(record.get(0).asLong(), record.get(1).asString(), record.get(2).asLong(), record.get(3).asLong());
+                neighbour = graphDb.lazyVertex(record.get(4).asLong());
+            } else {
+                edge = graphDb.wrapEdge(record.get(0).asRelationship());
+                neighbour = graphDb.wrapVertex(record.get(1).asNode());
+            }
+            relationshipIds[i] = edge.nativeId();
+            neighbourIds[i] = neighbour.nativeId();
+            if (edges != null) {
+                edges.add(edge);
+            }
+            if (vertices != null) {
+                vertices.add(neighbour);
+            }
+        }
+        graphDb.expanded(nativeId(), direction, labels, new Adjacency.Expansion(relationshipIds, neighbourIds));
     }
 
     @Override
     public VertexQuery query() {
-        return new DefaultVertexQuery(this);
+        return new Neo4jVertexQuery(this, graphDb);
     }
 
     @Override
@@ -90,22 +204,32 @@ public class Neo4jVertex extends Neo4jElement<Node> implements Vertex {
     public void setProperty(String key, Object value) {
         ElementHelper.validateProperty(this, key, value);
         if (Neo4jGraph.NODE_GLOBAL_LABEL.equals(key)) {
-            // Apply magic property as label
-            addLabel(value.toString());
+            // Apply magic property as label, counted as part of this mutation
+            applyLabel(value.toString());
         }
-        String statement = String.format("match (n) where id(n) = {id} set n.`%s` = {value} return n", key);
-        Value params = Values.parameters("id", getId(), "value", Values.value(value));
-        StatementResult result = graphDb.withTx().run(statement, params);
-        rawElement = result.single().get(0).asNode();
+        if (bufferProperty(key, value)) {
+            rawElement = clone(this, key, value);
+        } else {
+            Value params = Values.parameters("id", getId(), "props", Collections.singletonMap(key, value));
+            StatementResult result = graphDb.withTx().run(Statements.SET_NODE_PROPERTIES, params);
+            refresh(result.single().get(0).asNode());
+        }
+        graphDb.written(this);
+        graphDb.mutated(key, value);
     }
 
     @Override
     public Object removeProperty(String key) {
         Object propValue = getProperty(key);
-        Value params = Values.parameters("id", getId());
-        String statement = String.format("match (n) where id(n) = {id} remove n.`%s` return n", key);
-        StatementResult result = graphDb.withTx().run(statement, params);
-        rawElement = result.single().get(0).asNode();
+        if (bufferProperty(key, null)) {
+            rawElement = clone(this, key);
+        } else {
+            Value params = Values.parameters("id", getId(), "props", Collections.singletonMap(key, null));
+            StatementResult result = graphDb.withTx().run(Statements.SET_NODE_PROPERTIES, params);
+            refresh(result.single().get(0).asNode());
+        }
+        graphDb.written(this);
+        graphDb.mutated(key, null);
         return propValue;
     }
 
@@ -117,28 +241,40 @@ public class Neo4jVertex extends Neo4jElement<Node> implements Vertex {
     // Non-Blueprints API methods
 
     public Set<String> getLabels() {
-        return StreamSupport.stream(rawElement.labels().spliterator(), false).collect(Collectors.toSet());
+        // Projected vertices know their labels
+        Node node = loadedKeys != null ? rawElement : getRawElement();
+        return StreamSupport.stream(node.labels().spliterator(), false).collect(Collectors.toSet());
     }
 
     public void addLabel(String label) {
-        String statement = String.format("match (n) where id(n) = {id} set n:`%s` return n", label);
+        applyLabel(label);
+        graphDb.written(this);
+        graphDb.mutated(label, null);
+    }
+
+    private void applyLabel(String label) {
         Value params = Values.parameters("id", getId());
-        StatementResult result = graphDb.withTx().run(statement, params);
-        rawElement = result.single().get(0).asNode();
+        StatementResult result = graphDb.withTx().run(graphDb.statements.addLabel(label), params);
+        refresh(result.single().get(0).asNode());
     }
 
     public void removeLabel(String label) {
-        String statement = String.format("match (n) where id(n) = {id} remove n:`%s`", label);
         Value params = Values.parameters("id", getId());
-        graphDb.withTx().run(statement, params);
+        graphDb.withTx().run(graphDb.statements.removeLabel(label), params);
+        graphDb.written(this);
+        graphDb.mutated(label, null);
     }
 
+    /**
+     * Compares vertices by id. A pending vertex has no id yet and only equals itself, so that comparing it does not
+     * flush the write buffer.
+     */
     public boolean equals(Object other) {
-        if (!(other instanceof Vertex)) {
-            return false;
+        if (this == other) {
+            return true;
         }
 
-        if (getId() == null) {
+        if (!(other instanceof Vertex) || pending || other instanceof Neo4jElement && ((Neo4jElement) other).isPending()) {
             return false;
         }
 
@@ -146,6 +282,14 @@ public class Neo4jVertex extends Neo4jElement<Node> implements Vertex {
         return (getId().equals(otherVertex.getId()));
     }
 
+    /**
+     * Returns the identity hash code while the vertex is pending and the hash code of its id afterwards, so a pending
+     * vertex held in a hashed collection has to be added again once it has been created.
+     */
+    public int hashCode() {
+        return pending ? System.identityHashCode(this) : getId().hashCode();
+    }
+
     public String toString() {
         return ("Vertex(" + getId() + ")");
     }
@@ -0,0 +1,189 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.EdgeIterable;
+import com.tinkerpop.blueprints.impls.neo4j.iterable.VertexIterable;
+import com.tinkerpop.blueprints.util.DefaultVertexQuery;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs a vertex query as a single Cypher statement: the labels become relationship types of the pattern and the has
+ * containers become conditions on the relationship. Containers whose predicate Cypher can not evaluate are checked
+ * on the client, in which case the limit is applied on the client as well.
+ */
+public class Neo4jVertexQuery extends DefaultVertexQuery {
+
+    private final Neo4jVertex neo4jVertex;
+    private final Neo4jGraph graphDb;
+
+    public Neo4jVertexQuery(final Neo4jVertex vertex, final Neo4jGraph graphDb) {
+        super(vertex);
+        this.neo4jVertex = vertex;
+        this.graphDb = graphDb;
+    }
+
+    @Override
+    public Iterable<Edge> edges() {
+        List<HasContainer> clientSide = new ArrayList<>();
+        StatementResult result = run(clientSide, "r");
+        if (clientSide.isEmpty()) {
+            return new EdgeIterable(result, graphDb);
+        }
+        return filter(result, clientSide, 0, record -> graphDb.wrapEdge(record.get(0).asRelationship()));
+    }
+
+    @Override
+    public Iterable<Vertex> vertices() {
+        List<HasContainer> clientSide = new ArrayList<>();
+        StatementResult result = run(clientSide, "b");
+        if (clientSide.isEmpty()) {
+            return new VertexIterable(result, graphDb);
+        }
+        return filter(result, clientSide, 1, record -> graphDb.wrapVertex(record.get(0).asNode()));
+    }
+
+    /**
+     * Streams the records whose relationship, in column {@code edgeColumn}, passes the client side has containers, up
+     * to the limit of the query.
+     */
+    private <T> Iterable<T> filter(StatementResult result, List<HasContainer> clientSide, int edgeColumn,
+                                   Function<Record, T> element) {
+        return () -> {
+            Stream<Record> records = StreamSupport.stream(Spliterators.spliteratorUnknownSize(result, Spliterator.ORDERED), false);
+            return records.filter(record -> {
+                Edge edge = graphDb.wrapEdge(record.get(edgeColumn).asRelationship());
+                return clientSide.stream().allMatch(hasContainer -> hasContainer.isLegal(edge));
+            }).map(element).limit(limit).iterator();
+        };
+    }
+
+    /**
+     * Returns the ids of the adjacent vertices without reading the vertices, as a list like
+     * {@link DefaultVertexQuery#vertexIds()}. The ids are held in a primitive array, see {@link #vertexIdArray()}.
+     */
+    @Override
+    public List<Long> vertexIds() {
+        long[] ids = vertexIdArray();
+        return new AbstractList<Long>() {
+            @Override
+            public Long get(int index) {
+                return ids[index];
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    /**
+     * Returns the ids of the adjacent vertices without reading the vertices.
+     */
+    public long[] vertexIdArray() {
+        return vertexIdStream().toArray();
+    }
+
+    /**
+     * Streams the ids of the adjacent vertices, see {@link #vertexIdArray()}.
+     */
+    public LongStream vertexIdStream() {
+        List<HasContainer> clientSide = new ArrayList<>();
+        StatementResult result = run(clientSide, "id(b)");
+        if (clientSide.isEmpty()) {
+            return Neo4jGraph.idStream(result);
+        }
+        Iterable<Long> ids = filter(result, clientSide, 1, record -> record.get(0).asLong());
+        return StreamSupport.stream(ids.spliterator(), false).mapToLong(Long::longValue);
+    }
+
+    /**
+     * Counts the matching edges on the server. Without conditions the count is the degree of the vertex, which Neo4j
+     * reads from the node without touching the relationships.
+     */
+    @Override
+    public long count() {
+        List<HasContainer> clientSide = new ArrayList<>();
+        WhereClause where = where(clientSide);
+        if (!clientSide.isEmpty()) {
+            return super.count();
+        }
+        long count;
+        if (hasContainers.isEmpty()) {
+            String statement = "match (a) where id(a) = {id} return size((a)" + relationship("") + "())";
+            count = graphDb.withTx().run(statement, where.getParameters()).single().get(0).asLong();
+        } else {
+            String statement = "match (a)" + relationship("r") + "(b) " + where + "return count(*)";
+            count = graphDb.withTx().run(statement, where.getParameters()).single().get(0).asLong();
+        }
+        return Math.min(count, limit);
+    }
+
+    /**
+     * Builds the pattern of the query and runs it. The has containers that can not be translated are added to
+     * {@code clientSide}, in which case the relationship is returned as well so that they can be checked; the limit
+     * is only sent when there are none.
+     */
+    private StatementResult run(List<HasContainer> clientSide, String column) {
+        WhereClause where = where(clientSide);
+        StringBuilder sb = new StringBuilder("match (a)").append(relationship("r"));
+        sb.append("(b) ").append(where).append("return ").append(column);
+        if (!clientSide.isEmpty() && !"r".equals(column)) {
+            sb.append(", r");
+        } else if (clientSide.isEmpty() && limit != Integer.MAX_VALUE) {
+            sb.append(" limit {limit}");
+            where.parameter("limit", limit);
+        }
+        return graphDb.withTx().run(sb.toString(), where.getParameters());
+    }
+
+    /**
+     * Translates the vertex id and the has containers into conditions, adding the containers that can not be
+     * translated to {@code clientSide}.
+     */
+    private WhereClause where(List<HasContainer> clientSide) {
+        WhereClause where = new WhereClause();
+        where.add("id(a) = {id}");
+        where.parameter("id", neo4jVertex.getId());
+        for (HasContainer hasContainer : hasContainers) {
+            String property = WhereClause.expression("r", hasContainer.key, true);
+            if (!where.add(property, hasContainer.predicate, hasContainer.value)) {
+                clientSide.add(hasContainer);
+            }
+        }
+        return where;
+    }
+
+    /**
+     * Returns the relationship part of the pattern, with the direction and labels of the query.
+     */
+    private String relationship(String variable) {
+        StringBuilder sb = new StringBuilder();
+        if (direction == Direction.IN) {
+            sb.append("<");
+        }
+        sb.append("-[").append(variable);
+        for (int i = 0; i < labels.length; i++) {
+            sb.append(i == 0 ? ":" : "|").append('`').append(labels[i]).append('`');
+        }
+        sb.append("]-");
+        if (direction == Direction.OUT) {
+            sb.append(">");
+        }
+        return sb.toString();
+    }
+
+}
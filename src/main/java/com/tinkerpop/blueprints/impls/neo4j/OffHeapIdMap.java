@@ -0,0 +1,310 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Maps external ids to Neo4j node ids for bulk imports without boxing. Entries live outside of the Java heap in an
+ * open-addressing table with linear probing, either in direct memory or in a memory-mapped file that a resumed import
+ * can reopen.
+ * <p>
+ * Integral keys are stored as they are; any other key, strings included, is stored as a 64-bit hash of its string
+ * form only. Two distinct string keys collide with a probability of about 2<sup>-64</sup> per pair, i.e. about
+ * n<sup>2</sup>/2<sup>65</sup> for n keys (7&times;10<sup>-5</sup> for 50 million), and colliding keys silently map to
+ * the same node.
+ * <p>
+ * The table doubles when it is 70% full. A mapped table is rebuilt after the current one in the same file, which is
+ * never replaced while mapped; the header is switched to the new table once it has been written, so a crash during
+ * the rebuild leaves the previous table in use. Earlier tables are not reclaimed, so the file grows to about twice
+ * the size of the table.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class OffHeapIdMap implements Closeable {
+
+    public static final long NOT_FOUND = -1;
+
+    private static final long MAGIC = 0x4e346a49644d6170L;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+    private static final int MAX_SEGMENT_SHIFT = 23;
+    private static final double MAX_LOAD = 0.7;
+
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private ByteBuffer[] segments;
+    private int segmentShift;
+    private long tableOffset;
+    private long capacity;
+    private long size;
+    private long checkpoint;
+
+    /**
+     * Creates a map in direct memory sized for {@code expectedSize} entries.
+     */
+    public static OffHeapIdMap allocate(long expectedSize) {
+        OffHeapIdMap map = new OffHeapIdMap();
+        try {
+            map.init(capacityFor(expectedSize), 0);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return map;
+    }
+
+    /**
+     * Opens the map stored in {@code file}, or creates it sized for {@code expectedSize} entries if the file does not
+     * exist yet.
+     */
+    public static OffHeapIdMap open(Path file, long expectedSize) throws IOException {
+        OffHeapIdMap map = new OffHeapIdMap();
+        boolean exists = Files.exists(file) && Files.size(file) >= HEADER_BYTES;
+        map.channel = openChannel(file);
+        map.header = map.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        if (exists) {
+            if (map.header.getLong(0) != MAGIC) {
+                map.channel.close();
+                throw new IOException("Not an id map: " + file);
+            }
+            map.size = map.header.getLong(16);
+            map.checkpoint = map.header.getLong(32);
+            // Maps written before tables could move start right after the header
+            long tableOffset = map.header.getLong(24);
+            map.init(map.header.getLong(8), tableOffset == 0 ? HEADER_BYTES : tableOffset);
+        } else {
+            map.init(capacityFor(expectedSize), HEADER_BYTES);
+        }
+        return map;
+    }
+
+    private static FileChannel openChannel(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static long capacityFor(long expectedSize) {
+        long capacity = 16;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void init(long capacity, long tableOffset) throws IOException {
+        this.capacity = capacity;
+        this.tableOffset = tableOffset;
+        this.segmentShift = Math.min(Long.numberOfTrailingZeros(capacity), MAX_SEGMENT_SHIFT);
+        long segmentBytes = (long) SLOT_BYTES << segmentShift;
+        this.segments = new ByteBuffer[(int) (capacity >>> segmentShift)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = channel == null
+                    ? ByteBuffer.allocateDirect((int) segmentBytes)
+                    : channel.map(FileChannel.MapMode.READ_WRITE, tableOffset + i * segmentBytes, segmentBytes);
+        }
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        if (header != null) {
+            header.putLong(0, MAGIC);
+            header.putLong(8, capacity);
+            header.putLong(16, size);
+            header.putLong(24, tableOffset);
+            header.putLong(32, checkpoint);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the position recorded by {@link #setCheckpoint(long)}, or 0 if none was.
+     */
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Records a position chosen by the caller, such as the number of input elements whose ids are in the map. A mapped
+     * map keeps it in its header, so that {@link #force()} writes it together with the entries.
+     */
+    public void setCheckpoint(long checkpoint) {
+        this.checkpoint = checkpoint;
+        if (header != null) {
+            header.putLong(32, checkpoint);
+        }
+    }
+
+    public boolean containsKey(Object id) {
+        return get(id) != NOT_FOUND;
+    }
+
+    /**
+     * Returns the node id mapped to the external id, or {@link #NOT_FOUND}.
+     */
+    public long get(Object id) {
+        return get(keyOf(id));
+    }
+
+    public long get(long key) {
+        long mask = capacity - 1;
+        for (long slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            ByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            long stored = segment.getLong(offset + 8);
+            if (stored == 0) {
+                return NOT_FOUND;
+            }
+            if (segment.getLong(offset) == key) {
+                return stored - 1;
+            }
+        }
+    }
+
+    public void put(Object id, long nodeId) {
+        put(keyOf(id), nodeId);
+    }
+
+    public void put(long key, long nodeId) {
+        if (nodeId < 0) {
+            throw new IllegalArgumentException("Node ids can not be negative: " + nodeId);
+        }
+        if (size + 1 > capacity * MAX_LOAD) {
+            try {
+                resize(capacity << 1);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        insert(key, nodeId + 1);
+        if (header != null) {
+            header.putLong(16, size);
+        }
+    }
+
+    /**
+     * Stores an already encoded value, which is the node id plus one so that zero marks an empty slot.
+     */
+    private void insert(long key, long value) {
+        long mask = capacity - 1;
+        for (long slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            ByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            if (segment.getLong(offset + 8) == 0) {
+                segment.putLong(offset, key);
+                segment.putLong(offset + 8, value);
+                size++;
+                return;
+            }
+            if (segment.getLong(offset) == key) {
+                segment.putLong(offset + 8, value);
+                return;
+            }
+        }
+    }
+
+    private void resize(long newCapacity) throws IOException {
+        ByteBuffer[] oldSegments = segments;
+        long oldCapacity = capacity;
+        long oldTableOffset = tableOffset;
+        MappedByteBuffer mappedHeader = header;
+        // The header keeps describing the old table until the new one is complete
+        header = null;
+        size = 0;
+        init(newCapacity, channel == null ? 0 : oldTableOffset + oldCapacity * SLOT_BYTES);
+        if (channel != null) {
+            // The region may hold a table left by a rebuild that was interrupted
+            for (ByteBuffer segment : segments) {
+                for (int offset = 0; offset < segment.capacity(); offset += 8) {
+                    segment.putLong(offset, 0);
+                }
+            }
+        }
+        for (ByteBuffer segment : oldSegments) {
+            for (int offset = 0; offset < segment.capacity(); offset += SLOT_BYTES) {
+                long value = segment.getLong(offset + 8);
+                if (value != 0) {
+                    insert(segment.getLong(offset), value);
+                }
+            }
+        }
+        header = mappedHeader;
+        if (header != null) {
+            for (ByteBuffer segment : segments) {
+                ((MappedByteBuffer) segment).force();
+            }
+            writeHeader();
+            header.force();
+        }
+    }
+
+    private ByteBuffer segment(long slot) {
+        return segments[(int) (slot >>> segmentShift)];
+    }
+
+    private int offset(long slot) {
+        return (int) (slot & ((1L << segmentShift) - 1)) * SLOT_BYTES;
+    }
+
+    /**
+     * Writes the contents of a memory-mapped map to its file. Does nothing for a map in direct memory.
+     */
+    public void force() {
+        if (header == null) {
+            return;
+        }
+        header.force();
+        for (ByteBuffer segment : segments) {
+            ((MappedByteBuffer) segment).force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+        }
+        segments = new ByteBuffer[0];
+        header = null;
+    }
+
+    /**
+     * Returns the key under which an external id is stored.
+     */
+    public static long keyOf(Object id) {
+        if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            return ((Number) id).longValue();
+        }
+        return hash(id.toString());
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the characters, finalized with {@link #mix(long)}.
+     */
+    public static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The write statements of the graph. Property writes take the key inside the {@code props} map parameter, as in
+ * {@code set n += {props}}, so one statement text serves every key and Neo4j plans it once. A null value in the map
+ * removes the property.
+ * <p>
+ * Labels and relationship types can not be parameters, so the statements that name one are generated once per label
+ * and kept by the {@link Neo4jGraph} that runs them, so that they are released with it. Their number is bounded by the
+ * labels and relationship types that graph writes.
+ */
+final class Statements {
+
+    static final String SET_NODE_PROPERTIES = "match (n) where id(n) = {id} set n += {props} return n";
+    static final String SET_RELATIONSHIP_PROPERTIES = "match ()-[r]->() where id(r) = {id} set r += {props} return r";
+
+    static final String CREATE_NODE = "create (n:`" + Neo4jGraph.NODE_GLOBAL_INDEX + "`) return n";
+
+    /**
+     * Creates one node per row of the {@code rows} parameter, see {@link WriteBuffer}.
+     */
+    static final String CREATE_NODES = "unwind {rows} as row create (n:`" + Neo4jGraph.NODE_GLOBAL_INDEX + "`) " +
+            "set n = row.props return row.i, id(n)";
+
+    private final ConcurrentMap<String, String> addLabel = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> removeLabel = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> createRelationship = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> createRelationships = new ConcurrentHashMap<>();
+
+    String addLabel(String label) {
+        return addLabel.computeIfAbsent(label,
+                l -> String.format("match (n) where id(n) = {id} set n:`%s` return n", l));
+    }
+
+    String removeLabel(String label) {
+        return removeLabel.computeIfAbsent(label,
+                l -> String.format("match (n) where id(n) = {id} remove n:`%s`", l));
+    }
+
+    /**
+     * Creates one relationship of the given type between the nodes with ids {@code ida} and {@code idb}.
+     */
+    String createRelationship(String type) {
+        return createRelationship.computeIfAbsent(type,
+                t -> String.format("match (a), (b) where id(a) = {ida} and id(b) = {idb} create (a)-[r:`%s`]->(b) return r", t));
+    }
+
+    /**
+     * Creates one relationship of the given type per row of the {@code rows} parameter, see {@link WriteBuffer}.
+     */
+    String createRelationships(String type) {
+        return createRelationships.computeIfAbsent(type,
+                t -> String.format("unwind {rows} as row match (a), (b) where id(a) = row.out and id(b) = row.in " +
+                        "create (a)-[r:`%s`]->(b) set r = row.props return row.i, id(r)", t));
+    }
+
+}
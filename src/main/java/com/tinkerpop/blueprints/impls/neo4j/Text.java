@@ -0,0 +1,53 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import com.tinkerpop.blueprints.Predicate;
+
+/**
+ * String predicates for {@code has(key, predicate, value)}. {@link Neo4jGraphQuery} and {@link Neo4jVertexQuery} send
+ * them as {@code STARTS WITH}, {@code ENDS WITH} and {@code CONTAINS}; Neo4j answers prefix conditions on indexed keys
+ * with an index seek. Properties that are not strings never match.
+ */
+public enum Text implements Predicate {
+
+    STARTS_WITH("starts with") {
+        @Override
+        protected boolean test(String property, String value) {
+            return property.startsWith(value);
+        }
+    },
+
+    ENDS_WITH("ends with") {
+        @Override
+        protected boolean test(String property, String value) {
+            return property.endsWith(value);
+        }
+    },
+
+    CONTAINS("contains") {
+        @Override
+        protected boolean test(String property, String value) {
+            return property.contains(value);
+        }
+    };
+
+    private final String operator;
+
+    Text(String operator) {
+        this.operator = operator;
+    }
+
+    /**
+     * Returns the Cypher operator of the predicate.
+     */
+    public String getOperator() {
+        return operator;
+    }
+
+    @Override
+    public boolean evaluate(Object first, Object second) {
+        return first instanceof String && second instanceof String && test((String) first, (String) second);
+    }
+
+    protected abstract boolean test(String property, String value);
+
+}
@@ -0,0 +1,106 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import com.tinkerpop.blueprints.Compare;
+import com.tinkerpop.blueprints.Contains;
+import com.tinkerpop.blueprints.Predicate;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the conditions of a query that can be evaluated by Cypher, together with their parameters.
+ * <p>
+ * Predicates translate with the null semantics of Blueprints: a missing property equals null, differs from any
+ * other value and is neither greater nor less than anything.
+ */
+class WhereClause {
+
+    private final List<String> conditions = new ArrayList<>();
+    private final Map<String, Object> parameters = new HashMap<>();
+
+    /**
+     * Adds a condition that refers to parameters set with {@link #parameter(String, Object)}.
+     */
+    void add(String condition) {
+        conditions.add(condition);
+    }
+
+    void parameter(String name, Object value) {
+        parameters.put(name, value);
+    }
+
+    /**
+     * Returns the expression a has container on {@code key} refers to: the id or type of the element for the reserved
+     * Blueprints keys, the property otherwise.
+     */
+    static String expression(String variable, String key, boolean relationship) {
+        if (StringFactory.ID.equals(key)) {
+            return "id(" + variable + ")";
+        }
+        if (relationship && StringFactory.LABEL.equals(key)) {
+            return "type(" + variable + ")";
+        }
+        return String.format("%s.`%s`", variable, key);
+    }
+
+    /**
+     * Adds the condition for a has container on the given expression, see {@link #expression(String, String, boolean)}.
+     *
+     * @return false if the predicate can not be evaluated by Cypher and has to be checked on the client
+     */
+    boolean add(String property, Predicate predicate, Object value) {
+        String param = "{p" + parameters.size() + "}";
+        if (predicate == Compare.EQUAL && value == null) {
+            conditions.add(property + " is null");
+            return true;
+        }
+        if (predicate == Compare.NOT_EQUAL && value == null) {
+            conditions.add(property + " is not null");
+            return true;
+        }
+        if (predicate == Compare.EQUAL) {
+            conditions.add(property + " = " + param);
+        } else if (predicate == Compare.NOT_EQUAL) {
+            conditions.add("(" + property + " is null or " + property + " <> " + param + ")");
+        } else if (predicate == Compare.GREATER_THAN) {
+            conditions.add(property + " > " + param);
+        } else if (predicate == Compare.GREATER_THAN_EQUAL) {
+            conditions.add(property + " >= " + param);
+        } else if (predicate == Compare.LESS_THAN) {
+            conditions.add(property + " < " + param);
+        } else if (predicate == Compare.LESS_THAN_EQUAL) {
+            conditions.add(property + " <= " + param);
+        } else if (predicate instanceof Text && value instanceof String) {
+            conditions.add(property + " " + ((Text) predicate).getOperator() + " " + param);
+        } else if (predicate == Contains.IN && value instanceof Collection) {
+            conditions.add(property + " in " + param);
+        } else if (predicate == Contains.NOT_IN && value instanceof Collection) {
+            conditions.add("(" + property + " is null or not " + property + " in " + param + ")");
+        } else {
+            return false;
+        }
+        parameters.put("p" + parameters.size(), value);
+        return true;
+    }
+
+    boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the conditions joined by {@code and}, preceded by {@code where}, or an empty string if there are none.
+     */
+    @Override
+    public String toString() {
+        return conditions.isEmpty() ? "" : "where " + String.join(" and ", conditions) + " ";
+    }
+
+}
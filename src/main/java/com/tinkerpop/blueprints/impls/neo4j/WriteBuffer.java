@@ -0,0 +1,220 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.StatementRunner;
+import org.neo4j.driver.v1.Values;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the writes that {@link Neo4jGraph} defers until the next flush:
+ * <ul>
+ * <li>vertices created in batch mode, sent with one {@code unwind ... create} statement and patched with their ids
+ * once the server has assigned them;</li>
+ * <li>edges created in batch mode, grouped by label and sent with one {@code unwind ... create} statement per label
+ * after the vertices, so that edges between pending vertices can be resolved;</li>
+ * <li>elements whose property writes have been buffered by {@link Neo4jElement}, sent with one
+ * {@code set x += row.props} statement per element type. Removed properties are sent as null values, which Cypher
+ * treats as a removal in a map update.</li>
+ * </ul>
+ */
+class WriteBuffer {
+
+    private final int propertyCapacity;
+    private final int vertexBatchSize;
+    private final int edgeBatchSize;
+    private final List<Neo4jVertex> pendingVertices = new ArrayList<>();
+    private final Map<String, List<Neo4jEdge>> pendingEdges = new LinkedHashMap<>();
+    private int pendingEdgeCount = 0;
+    private final Set<Neo4jElement<?>> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int pendingWrites = 0;
+    private final Statements statements;
+
+    WriteBuffer(int propertyCapacity, int vertexBatchSize, int edgeBatchSize, Statements statements) {
+        this.propertyCapacity = propertyCapacity;
+        this.vertexBatchSize = vertexBatchSize;
+        this.edgeBatchSize = edgeBatchSize;
+        this.statements = statements;
+    }
+
+    boolean isBufferingProperties() {
+        return propertyCapacity > 0;
+    }
+
+    boolean isBatchingVertices() {
+        return vertexBatchSize > 0;
+    }
+
+    boolean isBatchingEdges() {
+        return edgeBatchSize > 0;
+    }
+
+    boolean isEmpty() {
+        return pendingVertices.isEmpty() && pendingEdgeCount == 0 && dirty.isEmpty();
+    }
+
+    /**
+     * Records a buffered write of the element and returns true once the buffer holds {@code propertyCapacity} writes.
+     */
+    boolean add(Neo4jElement<?> element) {
+        dirty.add(element);
+        return ++pendingWrites >= propertyCapacity;
+    }
+
+    /**
+     * Queues the creation of a pending vertex and returns true once {@code vertexBatchSize} vertices are queued.
+     */
+    boolean addVertex(Neo4jVertex vertex) {
+        pendingVertices.add(vertex);
+        return pendingVertices.size() >= vertexBatchSize;
+    }
+
+    /**
+     * Queues the creation of a pending edge and returns true once {@code edgeBatchSize} edges are queued.
+     */
+    boolean addEdge(Neo4jEdge edge) {
+        pendingEdges.computeIfAbsent(edge.getLabel(), label -> new ArrayList<>()).add(edge);
+        return ++pendingEdgeCount >= edgeBatchSize;
+    }
+
+    /**
+     * Drops the deferred writes of an element that is being removed, including the pending edges of a vertex, which
+     * could not be created once the vertex is gone.
+     *
+     * @return true if the element was still pending, i.e. it does not exist on the server
+     */
+    boolean discard(Neo4jElement<?> element) {
+        if (dirty.remove(element)) {
+            element.takePendingProperties();
+        }
+        if (element instanceof Neo4jVertex) {
+            Neo4jVertex vertex = (Neo4jVertex) element;
+            for (List<Neo4jEdge> edges : pendingEdges.values()) {
+                int size = edges.size();
+                edges.removeIf(edge -> vertex.equals(edge.outVertex) || vertex.equals(edge.inVertex));
+                pendingEdgeCount -= size - edges.size();
+            }
+        }
+        if (!element.isPending()) {
+            return false;
+        }
+        if (element instanceof Neo4jVertex) {
+            return pendingVertices.removeIf(vertex -> vertex == element);
+        }
+        List<Neo4jEdge> edges = pendingEdges.getOrDefault(((Neo4jEdge) element).getLabel(), Collections.emptyList());
+        if (edges.removeIf(edge -> edge == element)) {
+            pendingEdgeCount--;
+            return true;
+        }
+        return false;
+    }
+
+    void clear() {
+        dirty.forEach(Neo4jElement::takePendingProperties);
+        dirty.clear();
+        pendingWrites = 0;
+        pendingVertices.clear();
+        pendingEdges.clear();
+        pendingEdgeCount = 0;
+    }
+
+    void flush(StatementRunner runner) {
+        if (!pendingVertices.isEmpty()) {
+            flushVertices(runner);
+        }
+        if (pendingEdgeCount > 0) {
+            flushEdges(runner);
+        }
+        if (!dirty.isEmpty()) {
+            flushProperties(runner);
+        }
+    }
+
+    private void flushVertices(StatementRunner runner) {
+        List<Neo4jVertex> vertices = new ArrayList<>(pendingVertices);
+        pendingVertices.clear();
+
+        List<Map<String, Object>> rows = new ArrayList<>(vertices.size());
+        for (int i = 0; i < vertices.size(); i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("i", i);
+            row.put("props", vertices.get(i).getRawElement().asMap());
+            rows.add(row);
+        }
+        StatementResult result = runner.run(Statements.CREATE_NODES, Values.parameters("rows", rows));
+        while (result.hasNext()) {
+            Record record = result.next();
+            vertices.get(record.get(0).asInt()).created(record.get(1).asLong());
+        }
+    }
+
+    private void flushEdges(StatementRunner runner) {
+        Map<String, List<Neo4jEdge>> edgesByLabel = new LinkedHashMap<>(pendingEdges);
+        pendingEdges.clear();
+        pendingEdgeCount = 0;
+
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, List<Neo4jEdge>> entry : edgesByLabel.entrySet()) {
+            List<Neo4jEdge> edges = entry.getValue();
+            if (edges.isEmpty()) {
+                continue;
+            }
+            List<Map<String, Object>> rows = new ArrayList<>(edges.size());
+            for (int i = 0; i < edges.size(); i++) {
+                Neo4jEdge edge = edges.get(i);
+                Map<String, Object> row = new HashMap<>();
+                row.put("i", i);
+                row.put("out", edge.outVertex.getId());
+                row.put("in", edge.inVertex.getId());
+                row.put("props", edge.getRawElement().asMap());
+                rows.add(row);
+            }
+            StatementResult result = runner.run(statements.createRelationships(entry.getKey()), Values.parameters("rows", rows));
+            while (result.hasNext()) {
+                Record record = result.next();
+                edges.get(record.get(0).asInt()).created(record.get(1).asLong());
+            }
+            // A row only returns nothing when one of its endpoints is gone
+            for (Neo4jEdge edge : edges) {
+                if (edge.isPending()) {
+                    failures.add(entry.getKey() + " edge from vertex " + edge.outVertex.getId() + " to vertex " + edge.inVertex.getId());
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Could not create " + String.join(", ", failures)
+                    + " because an endpoint does not exist");
+        }
+    }
+
+    private void flushProperties(StatementRunner runner) {
+        List<Map<String, Object>> nodeRows = new ArrayList<>();
+        List<Map<String, Object>> relationshipRows = new ArrayList<>();
+        for (Neo4jElement<?> element : dirty) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", element.getId());
+            row.put("props", element.takePendingProperties());
+            (element instanceof Neo4jVertex ? nodeRows : relationshipRows).add(row);
+        }
+        dirty.clear();
+        pendingWrites = 0;
+
+        if (!nodeRows.isEmpty()) {
+            runner.run("unwind {rows} as row match (n) where id(n) = row.id set n += row.props",
+                    Values.parameters("rows", nodeRows));
+        }
+        if (!relationshipRows.isEmpty()) {
+            runner.run("unwind {rows} as row match ()-[r]->() where id(r) = row.id set r += row.props",
+                    Values.parameters("rows", relationshipRows));
+        }
+    }
+
+}
@@ -2,12 +2,19 @@ package com.tinkerpop.blueprints.impls.neo4j.iterable;
 
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
 import org.neo4j.driver.v1.types.Relationship;
 
 public class EdgeIterable extends ElementIterable<Edge, Relationship> {
 
-    public EdgeIterable(Iterable<Relationship> relationships, Neo4jGraph graph) {
-        super(relationships, graph, graph.getEdgeWrapper());
+    public EdgeIterable(StatementResult result, Neo4jGraph graph) {
+        super(result, graph, graph.getEdgeWrapper());
+    }
+
+    @Override
+    protected Relationship extract(Record record) {
+        return record.get(0).asRelationship();
     }
 
 }
@@ -4,39 +4,77 @@ import com.tinkerpop.blueprints.CloseableIterable;
 import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph.ElementWrapper;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
 import org.neo4j.driver.v1.types.Entity;
 
-import java.util.Iterator;;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
+/**
+ * Wraps a live {@link StatementResult} and converts its records into Blueprints elements as they are pulled, so only
+ * the records buffered by the driver are held on the heap.
+ * <p>
+ * The underlying cursor can only be walked once; every iterator returned by {@link #iterator()} shares it. Closing
+ * the iterable discards whatever has not been read yet.
+ * <p>
+ * When the graph has a positive {@link Neo4jGraph#getReadAheadSize()}, that many elements are wrapped ahead of the
+ * caller and the lazy ones among them are hydrated with a single query while the result is still open, see
+ * {@link Neo4jGraph#hydrateAhead(Iterable)}. The query runs on a session of its own, so the result keeps streaming,
+ * unless the transaction has written through the graph: it then runs on the transaction to see those writes, and the
+ * driver buffers the rest of the result on the heap before sending it.
+ */
 public abstract class ElementIterable<T extends Element, S extends Entity> implements CloseableIterable<T> {
 
-    protected final Iterable<S> elements;
+    protected final StatementResult result;
     protected final Neo4jGraph graphDb;
     protected final ElementWrapper<? extends T, S> elementWrapper;
+    private final Deque<T> readAhead = new ArrayDeque<>();
 
-    public ElementIterable(Iterable<S> elements, Neo4jGraph graphDb, ElementWrapper<? extends T, S> elementWrapper) {
-        this.elements = elements;
+    public ElementIterable(StatementResult result, Neo4jGraph graphDb, ElementWrapper<? extends T, S> elementWrapper) {
+        this.result = result;
         this.graphDb = graphDb;
         this.elementWrapper = elementWrapper;
     }
 
+    /**
+     * Extracts the raw element from a record of the wrapped result.
+     */
+    protected abstract S extract(Record record);
+
     @Override
     public void close() {
-        return;
+        readAhead.clear();
+        result.consume();
     }
 
     @Override
     public Iterator<T> iterator() {
-        final Iterator<S> elementIterator = elements.iterator();
         return new Iterator<T>() {
             @Override
             public boolean hasNext() {
-                return elementIterator.hasNext();
+                return !readAhead.isEmpty() || result.hasNext();
             }
 
             @Override
             public T next() {
-                return elementWrapper.wrap(elementIterator.next());
+                if (!readAhead.isEmpty()) {
+                    return readAhead.poll();
+                }
+                if (!result.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int readAheadSize = graphDb.getReadAheadSize();
+                if (readAheadSize <= 0) {
+                    return elementWrapper.wrap(extract(result.next()));
+                }
+                while (readAhead.size() < readAheadSize && result.hasNext()) {
+                    readAhead.add(elementWrapper.wrap(extract(result.next())));
+                }
+                graphDb.hydrateAhead(readAhead);
+                return readAhead.poll();
             }
 
             @Override
@@ -0,0 +1,27 @@
+package com.tinkerpop.blueprints.impls.neo4j.iterable;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph.EdgeWrapper;
+import org.neo4j.driver.internal.InternalRelationship;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.types.Relationship;
+
+/**
+ * Iterates over a result whose columns hold the id, type, start node id and end node id of relationships. The wrapper
+ * receives relationships without properties.
+ */
+public class LazyEdgeIterable extends ElementIterable<Edge, Relationship> {
+
+    public LazyEdgeIterable(StatementResult result, Neo4jGraph graph, EdgeWrapper<? extends Edge> lazyWrapper) {
+        super(result, graph, lazyWrapper);
+    }
+
+    @Override
+    protected Relationship extract(Record record) {
+        return new InternalRelationship(record.get(0).asLong(), record.get(2).asLong(), record.get(3).asLong(),
+                record.get(1).asString());
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.tinkerpop.blueprints.impls.neo4j.iterable;
+
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph.VertexWrapper;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.types.Node;
+
+/**
+ * Iterates over a result whose first column holds node ids. The wrapper receives nodes that only carry their id.
+ */
+public class LazyVertexIterable extends ElementIterable<Vertex, Node> {
+
+    public LazyVertexIterable(StatementResult result, Neo4jGraph graph, VertexWrapper<? extends Vertex> lazyWrapper) {
+        super(result, graph, lazyWrapper);
+    }
+
+    @Override
+    protected Node extract(Record record) {
+        return new InternalNode(record.get(0).asLong());
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.tinkerpop.blueprints.impls.neo4j.iterable;
+
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.types.Relationship;
+
+import java.util.Map;
+
+public class PagedEdgeIterable extends PagedElementIterable<Edge, Relationship> {
+
+    public PagedEdgeIterable(String statement, Map<String, Object> parameters, int pageSize, Neo4jGraph graph) {
+        super(statement, parameters, pageSize, graph, graph.getEdgeWrapper());
+    }
+
+    public PagedEdgeIterable(String statement, String boundsStatement, Map<String, Object> parameters, int pageSize,
+                             Neo4jGraph graph) {
+        super(statement, boundsStatement, parameters, pageSize, graph, graph.getEdgeWrapper());
+    }
+
+    @Override
+    protected Relationship extract(Record record) {
+        return record.get(0).asRelationship();
+    }
+
+}
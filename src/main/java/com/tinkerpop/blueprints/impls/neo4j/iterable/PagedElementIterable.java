@@ -0,0 +1,133 @@
+package com.tinkerpop.blueprints.impls.neo4j.iterable;
+
+import com.tinkerpop.blueprints.CloseableIterable;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph.ElementWrapper;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.types.Entity;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks a scan one page at a time, in one of two ways:
+ * <ul>
+ * <li>by id range, when a bounds statement returning the smallest and largest id is given. The statement must seek
+ * the ids from {@code {lo}} to {@code {hi}}, as in {@code unwind range({lo}, {hi}) as i match (n) where id(n) = i}, so
+ * each page only reads its own ids and a complete walk reads the id space once. Elements created above the largest id
+ * after the first page are not returned.</li>
+ * <li>by keyset otherwise, using the id of the last element seen as the key of the next page. The statement must
+ * filter on {@code id(x) > {last}}, order by id and apply {@code limit {page}}. Neo4j evaluates the whole lookup and
+ * sorts its matches again for every page, so walking {@code m} matches costs {@code m / page} lookups instead of one.
+ * </li>
+ * </ul>
+ * Each page is a separate statement that is read completely before the next one is sent, so the server never holds
+ * more than one page of the scan: paging bounds memory and transaction length, it does not make a scan faster than
+ * streaming it. Pages run in the open transaction when there is one and in auto-commit mode otherwise, see
+ * {@link Neo4jGraph#currentRunner()}.
+ */
+public abstract class PagedElementIterable<T extends Element, S extends Entity> implements CloseableIterable<T> {
+
+    protected final Neo4jGraph graphDb;
+    protected final ElementWrapper<? extends T, S> elementWrapper;
+    protected final String statement;
+    protected final String boundsStatement;
+    protected final Map<String, Object> parameters;
+    protected final int pageSize;
+
+    private Iterator<Record> page = Collections.emptyIterator();
+    private long last = -1;
+    private long next = -1;
+    private long maxId = -1;
+    private boolean exhausted = false;
+
+    public PagedElementIterable(String statement, Map<String, Object> parameters, int pageSize, Neo4jGraph graphDb,
+                                ElementWrapper<? extends T, S> elementWrapper) {
+        this(statement, null, parameters, pageSize, graphDb, elementWrapper);
+    }
+
+    public PagedElementIterable(String statement, String boundsStatement, Map<String, Object> parameters, int pageSize,
+                                Neo4jGraph graphDb, ElementWrapper<? extends T, S> elementWrapper) {
+        this.statement = statement;
+        this.boundsStatement = boundsStatement;
+        this.parameters = new HashMap<>(parameters);
+        this.pageSize = pageSize;
+        this.graphDb = graphDb;
+        this.elementWrapper = elementWrapper;
+    }
+
+    /**
+     * Extracts the raw element from a record of a page.
+     */
+    protected abstract S extract(Record record);
+
+    @Override
+    public void close() {
+        page = Collections.emptyIterator();
+        exhausted = true;
+    }
+
+    private boolean advance() {
+        while (!page.hasNext() && !exhausted) {
+            page = boundsStatement == null ? nextKeysetPage() : nextRangePage();
+        }
+        return page.hasNext();
+    }
+
+    private Iterator<Record> nextKeysetPage() {
+        parameters.put("last", last);
+        parameters.put("page", pageSize);
+        List<Record> records = graphDb.currentRunner().run(statement, parameters).list();
+        exhausted = records.size() < pageSize;
+        return records.iterator();
+    }
+
+    private Iterator<Record> nextRangePage() {
+        if (next < 0) {
+            Record bounds = graphDb.currentRunner().run(boundsStatement, parameters).single();
+            if (bounds.get(0).isNull()) {
+                exhausted = true;
+                return Collections.emptyIterator();
+            }
+            next = bounds.get(0).asLong();
+            maxId = bounds.get(1).asLong();
+        }
+        parameters.put("lo", next);
+        parameters.put("hi", Math.min(next + pageSize - 1, maxId));
+        List<Record> records = graphDb.currentRunner().run(statement, parameters).list();
+        next += pageSize;
+        exhausted = next > maxId;
+        return records.iterator();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return advance();
+            }
+
+            @Override
+            public T next() {
+                if (!advance()) {
+                    throw new NoSuchElementException();
+                }
+                S rawElement = extract(page.next());
+                last = rawElement.id();
+                return elementWrapper.wrap(rawElement);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
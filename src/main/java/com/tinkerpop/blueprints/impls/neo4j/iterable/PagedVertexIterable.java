@@ -0,0 +1,26 @@
+package com.tinkerpop.blueprints.impls.neo4j.iterable;
+
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.types.Node;
+
+import java.util.Map;
+
+public class PagedVertexIterable extends PagedElementIterable<Vertex, Node> {
+
+    public PagedVertexIterable(String statement, Map<String, Object> parameters, int pageSize, Neo4jGraph graph) {
+        super(statement, parameters, pageSize, graph, graph.getVertexWrapper());
+    }
+
+    public PagedVertexIterable(String statement, String boundsStatement, Map<String, Object> parameters, int pageSize,
+                               Neo4jGraph graph) {
+        super(statement, boundsStatement, parameters, pageSize, graph, graph.getVertexWrapper());
+    }
+
+    @Override
+    protected Node extract(Record record) {
+        return record.get(0).asNode();
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.tinkerpop.blueprints.impls.neo4j.iterable;
+
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph.VertexWrapper;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
+import org.neo4j.driver.v1.Value;
+import org.neo4j.driver.v1.types.Node;
+
+/**
+ * Iterates over a result whose columns hold the id, the labels and a map of selected properties of nodes, as returned
+ * by {@link #returnClause(String, String...)}. The wrapper receives nodes that only carry the selected properties.
+ */
+public class ProjectedVertexIterable extends ElementIterable<Vertex, Node> {
+
+    public ProjectedVertexIterable(StatementResult result, Neo4jGraph graph, VertexWrapper<? extends Vertex> projectionWrapper) {
+        super(result, graph, projectionWrapper);
+    }
+
+    @Override
+    protected Node extract(Record record) {
+        return extractNode(record);
+    }
+
+    public static Node extractNode(Record record) {
+        return new InternalNode(record.get(0).asLong(), record.get(1).asList(Value::asString), record.get(2).asMap(v -> v));
+    }
+
+    /**
+     * Builds the return clause that projects the node bound to {@code variable} on the given keys. It uses a map
+     * literal since map projections need Neo4j 3.1.
+     */
+    public static String returnClause(String variable, String... keys) {
+        StringBuilder sb = new StringBuilder("return id(").append(variable).append("), labels(").append(variable).append("), {");
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append('`').append(keys[i]).append("`: ").append(variable).append(".`").append(keys[i]).append('`');
+        }
+        return sb.append("}").toString();
+    }
+
+}
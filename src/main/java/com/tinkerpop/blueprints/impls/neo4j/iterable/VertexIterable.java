@@ -2,12 +2,19 @@ package com.tinkerpop.blueprints.impls.neo4j.iterable;
 
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.StatementResult;
 import org.neo4j.driver.v1.types.Node;
 
 public class VertexIterable extends ElementIterable<Vertex, Node> {
 
-    public VertexIterable(Iterable<Node> nodes, Neo4jGraph graph) {
-        super(nodes, graph, graph.getVertexWrapper());
+    public VertexIterable(StatementResult result, Neo4jGraph graph) {
+        super(result, graph, graph.getVertexWrapper());
+    }
+
+    @Override
+    protected Node extract(Record record) {
+        return record.get(0).asNode();
     }
 
 }
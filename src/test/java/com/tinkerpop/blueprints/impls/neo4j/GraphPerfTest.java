@@ -1,32 +1,99 @@
 package com.tinkerpop.blueprints.impls.neo4j;
 
 import com.tinkerpop.blueprints.*;
+import com.tinkerpop.blueprints.util.ElementHelper;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.After;
 import org.junit.Assert;
-import org.junit.BeforeClass;
+import org.junit.Before;
 import org.junit.ClassRule;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.driver.v1.Values;
 import org.neo4j.harness.junit.Neo4jRule;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 public class GraphPerfTest {
 
-    private static Neo4jGraph graphDb;
+    private Neo4jGraph graphDb;
 
     @ClassRule
     public static final Neo4jRule remoteDb = new Neo4jRule().withConfig("auth_enabled", "true");
 
-    @BeforeClass
-    public static void createNeo4jConnection() throws Exception {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Configuration config() {
         Configuration config = new PropertiesConfiguration();
         config.setProperty("blueprints.graph", "com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph");
         config.setProperty("blueprints.neo4j.url", remoteDb.boltURI().toString());
         config.setProperty("blueprints.neo4j.certFile", TestUtil.defaultCertFile(remoteDb.getConfig()).toString());
-        graphDb = (Neo4jGraph) GraphFactory.open(config);
+        return config;
+    }
+
+    /**
+     * Every test gets its own graph on an empty store, so that tests neither see each other's data nor depend on the
+     * order they run in.
+     */
+    @Before
+    public void createNeo4jConnection() {
+        graphDb = (Neo4jGraph) GraphFactory.open(config());
+        graphDb.getRawGraph().run("match (n) detach delete n").consume();
+    }
+
+    @After
+    public void closeNeo4jConnection() {
+        // testNeo4j shuts its graph down itself
+        if (graphDb.getRawGraph().isOpen()) {
+            graphDb.rollback();
+            graphDb.shutdown();
+        }
     }
 
+    /**
+     * Opens a second graph on the store with the given settings, as pairs of keys under {@code blueprints.neo4j} and
+     * values.
+     */
+    private static Neo4jGraph openGraph(Object... settings) {
+        Configuration config = config();
+        for (int i = 0; i < settings.length; i += 2) {
+            config.setProperty("blueprints.neo4j." + settings[i], settings[i + 1]);
+        }
+        return (Neo4jGraph) GraphFactory.open(config);
+    }
+
+    private static Set<Object> ids(Iterable<? extends Element> elements) {
+        Set<Object> ids = new HashSet<>();
+        for (Element element : elements) {
+            ids.add(element.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the ids in ascending order, keeping duplicates so that comparing lists also checks the count.
+     */
+    private static List<Long> sortedIds(Iterable<? extends Element> elements) {
+        List<Long> ids = new ArrayList<>();
+        for (Element element : elements) {
+            ids.add((Long) element.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private Vertex addVertex(Object... keyValues) {
+        Vertex vertex = graphDb.addVertex(null);
+        ElementHelper.setProperties(vertex, keyValues);
+        return vertex;
+    }
 
     @Test
     public void labelTest() {
@@ -69,6 +136,808 @@ public class GraphPerfTest {
         }
     }
 
+    @Test
+    public void reopenedIndexTest() {
+        graphDb.createKeyIndex("reopenedKey", Neo4jVertex.class);
+        addVertex("reopenedKey", "value");
+        graphDb.shutdown();
+
+        // A graph opened on the store knows the index without creating it
+        graphDb = (Neo4jGraph) GraphFactory.open(config());
+        Assert.assertTrue(graphDb.getIndexedKeys(Vertex.class).contains("reopenedKey"));
+        Neo4jGraphQuery query = (Neo4jGraphQuery) graphDb.query().has("reopenedKey", "value");
+        Assert.assertTrue(query.usesIndex());
+        Assert.assertEquals(1, query.vertexCount());
+        graphDb.commit();
+    }
+
+    @Test
+    public void unconditionalQueryTest() {
+        graphDb.getRawGraph().run("create (n:Other {name: 'outside'})").consume();
+        addVertex("name", "inside");
+        graphDb.commit();
+
+        Set<Object> names = new HashSet<>();
+        for (Vertex vertex : graphDb.query().vertices()) {
+            names.add(vertex.getProperty("name"));
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList("outside", "inside")), names);
+        Assert.assertEquals(2, graphDb.query().vertexCount());
+        graphDb.commit();
+    }
+
+    @Test
+    public void parallelScanTest() {
+        List<Long> vertexIds = new ArrayList<>();
+        List<Long> edgeIds = new ArrayList<>();
+        Vertex previous = null;
+        for (int i = 0; i < 10; i++) {
+            Vertex vertex = addVertex();
+            vertexIds.add((Long) vertex.getId());
+            if (previous != null) {
+                edgeIds.add((Long) graphDb.addEdge(null, previous, vertex, "next").getId());
+            }
+            previous = vertex;
+        }
+        graphDb.commit();
+        Collections.sort(vertexIds);
+        Collections.sort(edgeIds);
+
+        // Lists rather than sets, so that an element scanned by two partitions fails the test
+        List<Long> scannedVertexIds = Collections.synchronizedList(new ArrayList<>());
+        graphDb.parallelVertices(4, v -> scannedVertexIds.add((Long) v.getId()));
+        Collections.sort(scannedVertexIds);
+        Assert.assertEquals(vertexIds, scannedVertexIds);
+
+        List<Long> scannedEdgeIds = Collections.synchronizedList(new ArrayList<>());
+        graphDb.parallelEdges(4, e -> scannedEdgeIds.add((Long) e.getId()));
+        Collections.sort(scannedEdgeIds);
+        Assert.assertEquals(edgeIds, scannedEdgeIds);
+    }
+
+    @Test
+    public void pagedScanTest() {
+        graphDb.createKeyIndex("pagedGroup", Neo4jVertex.class);
+        List<Long> vertexIds = new ArrayList<>();
+        List<Long> evenIds = new ArrayList<>();
+        List<Long> edgeIds = new ArrayList<>();
+        List<Long> weightedIds = new ArrayList<>();
+        Vertex previous = null;
+        for (int i = 0; i < 10; i++) {
+            String group = i % 2 == 0 ? "even" : "odd";
+            Vertex vertex = addVertex("group", group, "pagedGroup", group);
+            vertexIds.add((Long) vertex.getId());
+            if (i % 2 == 0) {
+                evenIds.add((Long) vertex.getId());
+            }
+            if (previous != null) {
+                Edge edge = graphDb.addEdge(null, previous, vertex, "next");
+                edge.setProperty("weight", i % 3);
+                edgeIds.add((Long) edge.getId());
+                if (i % 3 == 1) {
+                    weightedIds.add((Long) edge.getId());
+                }
+            }
+            previous = vertex;
+        }
+        graphDb.commit();
+        Collections.sort(vertexIds);
+        Collections.sort(evenIds);
+        Collections.sort(edgeIds);
+        Collections.sort(weightedIds);
+
+        // Pages of three elements, so that every scan crosses several page boundaries
+        Neo4jGraph pagingGraph = openGraph("scanPageSize", 3);
+        try {
+            Assert.assertEquals(vertexIds, sortedIds(pagingGraph.getVertices()));
+            Assert.assertEquals(edgeIds, sortedIds(pagingGraph.getEdges()));
+            Assert.assertEquals(evenIds, sortedIds(pagingGraph.getVertices("group", "even")));
+            Assert.assertEquals(evenIds, sortedIds(pagingGraph.getVertices("pagedGroup", "even")));
+            Assert.assertEquals(evenIds, sortedIds(pagingGraph.query().has("group", "even").vertices()));
+            Assert.assertEquals(evenIds, sortedIds(pagingGraph.query().has("pagedGroup", "even").vertices()));
+            Assert.assertEquals(weightedIds, sortedIds(pagingGraph.getEdges("weight", 1)));
+            Assert.assertEquals(weightedIds, sortedIds(pagingGraph.query().has("weight", 1).edges()));
+        } finally {
+            pagingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void streamingTest() {
+        List<Long> vertexIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            vertexIds.add((Long) addVertex().getId());
+        }
+        graphDb.commit();
+        Collections.sort(vertexIds);
+
+        // Closing a partly read scan discards the rest, and the transaction can run other statements
+        CloseableIterable<Vertex> vertices = (CloseableIterable<Vertex>) graphDb.getVertices();
+        Iterator<Vertex> iterator = vertices.iterator();
+        for (int i = 0; i < 3; i++) {
+            iterator.next();
+        }
+        vertices.close();
+        Assert.assertEquals(10, graphDb.countVertices());
+        Assert.assertEquals(vertexIds, sortedIds(graphDb.getVertices()));
+
+        // Every iterator walks the same cursor
+        Iterable<Vertex> scan = graphDb.getVertices();
+        Iterator<Vertex> first = scan.iterator();
+        Iterator<Vertex> second = scan.iterator();
+        List<Long> scannedIds = new ArrayList<>();
+        scannedIds.add((Long) first.next().getId());
+        while (second.hasNext()) {
+            scannedIds.add((Long) second.next().getId());
+        }
+        Assert.assertFalse(first.hasNext());
+        Collections.sort(scannedIds);
+        Assert.assertEquals(vertexIds, scannedIds);
+        graphDb.commit();
+    }
+
+    @Test
+    public void multiGetTest() {
+        Vertex v1 = addVertex("name", "v1");
+        Vertex v2 = addVertex();
+        Edge edge = graphDb.addEdge(null, v1, v2, "KNOWS");
+        graphDb.commit();
+
+        long v1Id = (Long) v1.getId();
+        long v2Id = (Long) v2.getId();
+        List<Vertex> vertices = graphDb.getVertices(Arrays.asList(v2Id, Long.MAX_VALUE, v1Id));
+        Assert.assertEquals(3, vertices.size());
+        Assert.assertEquals(v2.getId(), vertices.get(0).getId());
+        Assert.assertNull(vertices.get(1));
+        Assert.assertEquals("v1", vertices.get(2).getProperty("name"));
+
+        List<Edge> edges = graphDb.getEdges(Arrays.asList(Long.MAX_VALUE, (Long) edge.getId()));
+        Assert.assertNull(edges.get(0));
+        Assert.assertEquals(edge.getId(), edges.get(1).getId());
+    }
+
+    @Test
+    public void projectionTest() {
+        addVertex("group", "projection", "name", "v1", "description", "a long text");
+        graphDb.commit();
+
+        Vertex projected = graphDb.getVertices("group", "projection", "name").iterator().next();
+        Assert.assertFalse(((Neo4jVertex) projected).isHydrated());
+        Assert.assertEquals("v1", projected.getProperty("name"));
+        Assert.assertFalse(((Neo4jVertex) projected).isHydrated());
+        Assert.assertEquals("a long text", projected.getProperty("description"));
+        Assert.assertTrue(((Neo4jVertex) projected).isHydrated());
+        graphDb.commit();
+    }
+
+    @Test
+    public void edgeEndpointTest() {
+        Vertex v0 = addVertex("name", "v0");
+        Vertex v1 = addVertex("name", "v1");
+        Vertex v2 = addVertex("name", "v2");
+        Edge e01 = graphDb.addEdge(null, v0, v1, "next");
+        Edge e12 = graphDb.addEdge(null, v1, v2, "next");
+        graphDb.commit();
+
+        Neo4jGraph cachingGraph = openGraph("cacheSize", 100);
+        try {
+            ElementCache<?> vertexCache = cachingGraph.getVertexCache();
+
+            // The endpoint is built from the relationship and read on first access
+            Neo4jVertex head = (Neo4jVertex) cachingGraph.getEdge(e01.getId()).getVertex(Direction.OUT);
+            Assert.assertEquals(v1.getId(), head.getId());
+            Assert.assertFalse(head.isHydrated());
+            Assert.assertEquals(0, vertexCache.size());
+            Assert.assertEquals("v1", head.getProperty("name"));
+            Assert.assertTrue(head.isHydrated());
+            Assert.assertEquals(1, vertexCache.size());
+
+            // Walking on to the next edge reaches the same vertex without reading it again
+            long misses = vertexCache.getMissCount();
+            Assert.assertSame(head, cachingGraph.getEdge(e12.getId()).getVertex(Direction.IN));
+            Assert.assertEquals(misses, vertexCache.getMissCount());
+            cachingGraph.commit();
+
+            // In a later transaction the endpoint is built from the cached snapshot
+            Neo4jVertex cached = (Neo4jVertex) cachingGraph.getEdge(e01.getId()).getVertex(Direction.OUT);
+            Assert.assertTrue(cached.isHydrated());
+            Assert.assertEquals(1, vertexCache.getHitCount());
+            Assert.assertEquals("v1", cached.getProperty("name"));
+            cachingGraph.commit();
+        } finally {
+            cachingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void readAheadTest() {
+        Vertex hub = addVertex();
+        Set<String> names = new HashSet<>();
+        Object changedId = null;
+        for (int i = 0; i < 10; i++) {
+            Vertex neighbour = addVertex("name", "n" + i);
+            graphDb.addEdge(null, hub, neighbour, "knows");
+            names.add("n" + i);
+            changedId = neighbour.getId();
+        }
+        graphDb.commit();
+
+        // Without an identity map every neighbour is a new lazy vertex, hydrated by the read-ahead
+        Neo4jGraph readingGraph = openGraph("lazyLoading", true, "readAheadSize", 4, "cacheSize", 100, "identityMapSize", 0);
+        try {
+            ElementCache<?> vertexCache = readingGraph.getVertexCache();
+            Iterator<Vertex> neighbours = readingGraph.getVertex(hub.getId()).getVertices(Direction.OUT).iterator();
+            Assert.assertEquals(1, vertexCache.size());
+            Set<String> readNames = new HashSet<>();
+            for (int i = 0; i < 4; i++) {
+                Vertex neighbour = neighbours.next();
+                Assert.assertTrue(((Neo4jVertex) neighbour).isHydrated());
+                Assert.assertEquals(5, vertexCache.size());
+                readNames.add((String) neighbour.getProperty("name"));
+            }
+            readNames.add((String) neighbours.next().getProperty("name"));
+            Assert.assertEquals(9, vertexCache.size());
+            neighbours.forEachRemaining(neighbour -> readNames.add((String) neighbour.getProperty("name")));
+            Assert.assertEquals(11, vertexCache.size());
+            Assert.assertEquals(names, readNames);
+            readingGraph.commit();
+
+            // Once the transaction has written, the read-ahead sees its writes
+            readingGraph.getVertex(changedId).setProperty("name", "changed");
+            boolean seen = false;
+            for (Vertex neighbour : readingGraph.getVertex(hub.getId()).getVertices(Direction.OUT)) {
+                Assert.assertTrue(((Neo4jVertex) neighbour).isHydrated());
+                if (neighbour.getId().equals(changedId)) {
+                    Assert.assertEquals("changed", neighbour.getProperty("name"));
+                    seen = true;
+                }
+            }
+            Assert.assertTrue(seen);
+            readingGraph.rollback();
+        } finally {
+            readingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void vertexQueryTest() {
+        Vertex hub = addVertex();
+        for (int i = 0; i < 10; i++) {
+            Edge edge = graphDb.addEdge(null, hub, addVertex(), i % 2 == 0 ? "EVEN" : "ODD");
+            edge.setProperty("weight", i);
+        }
+        graphDb.commit();
+
+        Assert.assertEquals(5, hub.query().direction(Direction.OUT).labels("EVEN").count());
+        Assert.assertEquals(4, hub.query().direction(Direction.OUT).interval("weight", 3, 7).count());
+        Assert.assertEquals(2, hub.query().direction(Direction.OUT).has("weight", Compare.GREATER_THAN, 5).limit(2).count());
+        Assert.assertEquals(0, hub.query().direction(Direction.IN).count());
+        long[] evenIds = ((Neo4jVertexQuery) hub.query().direction(Direction.OUT).labels("EVEN")).vertexIdArray();
+        Assert.assertEquals(5, evenIds.length);
+        List<?> oddIds = (List<?>) hub.query().direction(Direction.OUT).labels("ODD").vertexIds();
+        Assert.assertEquals(5, oddIds.size());
+        for (Edge edge : hub.query().direction(Direction.OUT).labels("ODD").has("weight", Compare.LESS_THAN_EQUAL, 3).edges()) {
+            Assert.assertTrue(((Number) edge.getProperty("weight")).longValue() <= 3);
+        }
+        graphDb.commit();
+    }
+
+    @Test
+    public void countTest() {
+        long vertices = graphDb.countVertices();
+        long edges = graphDb.countEdges();
+        Vertex v1 = addVertex("countKey", 1);
+        Vertex v2 = addVertex("countKey", 2);
+        graphDb.addEdge(null, v1, v2, "COUNTED").setProperty("countKey", 3);
+        graphDb.commit();
+
+        Assert.assertEquals(vertices + 2, graphDb.countVertices());
+        Assert.assertEquals(edges + 1, graphDb.countEdges());
+        Neo4jGraphQuery query = (Neo4jGraphQuery) graphDb.query().has("countKey", Compare.GREATER_THAN, 1);
+        Assert.assertEquals(1, query.vertexCount());
+        Assert.assertEquals(1, query.edgeCount());
+        Assert.assertEquals(1, v1.query().direction(Direction.OUT).count());
+    }
+
+    @Test
+    public void rangeAndPrefixTest() {
+        graphDb.createKeyIndex("rangeTitle", Neo4jVertex.class);
+        for (String title : Arrays.asList("alpha", "alphabet", "beta", "gamma")) {
+            addVertex("rangeTitle", title, "rangeRank", title.length());
+        }
+        graphDb.commit();
+
+        int count = 0;
+        for (Vertex vertex : graphDb.query().has("rangeTitle", Text.STARTS_WITH, "alpha").vertices()) {
+            Assert.assertTrue(((String) vertex.getProperty("rangeTitle")).startsWith("alpha"));
+            count++;
+        }
+        Assert.assertEquals(2, count);
+        Assert.assertEquals(1, ((Neo4jGraphQuery) graphDb.query().has("rangeTitle", Text.CONTAINS, "mm")).vertexCount());
+        Assert.assertEquals(3, ((Neo4jGraphQuery) graphDb.query().has("rangeTitle").interval("rangeRank", 4, 6)).vertexCount());
+        graphDb.commit();
+    }
+
+    @Test
+    public void orderedQueryTest() {
+        graphDb.createKeyIndex("orderedCreated", Neo4jVertex.class);
+        for (int i = 0; i < 10; i++) {
+            addVertex("orderedCreated", 1000L + i);
+        }
+        addVertex("name", "undated");
+        graphDb.commit();
+
+        List<Long> newest = new ArrayList<>();
+        Neo4jGraphQuery query = graphDb.query().orderBy("orderedCreated", true).limit(3);
+        for (Vertex vertex : query.has("orderedCreated", Compare.GREATER_THAN_EQUAL, 1000L).vertices()) {
+            newest.add((Long) vertex.getProperty("orderedCreated"));
+        }
+        Assert.assertEquals(Arrays.asList(1009L, 1008L, 1007L), newest);
+
+        // The vertex without the property is not sorted first
+        newest.clear();
+        for (Vertex vertex : graphDb.query().orderBy("orderedCreated", true).limit(3).vertices()) {
+            newest.add((Long) vertex.getProperty("orderedCreated"));
+        }
+        Assert.assertEquals(Arrays.asList(1009L, 1008L, 1007L), newest);
+        Assert.assertTrue(((Neo4jGraphQuery) graphDb.query().has("orderedCreated", 1005L)).usesIndex());
+        graphDb.commit();
+    }
+
+    @Test
+    public void elementCacheTest() throws Exception {
+        // Without an identity map every getVertex goes through the cache
+        Neo4jGraph cachingGraph = openGraph("cacheSize", 100, "cacheTtlMillis", 500, "identityMapSize", 0);
+        try {
+            ElementCache<?> cache = cachingGraph.getVertexCache();
+            Vertex vertex = cachingGraph.addVertex(null);
+            vertex.setProperty("name", "first");
+            Object id = vertex.getId();
+            cachingGraph.commit();
+
+            Assert.assertEquals("first", cachingGraph.getVertex(id).getProperty("name"));
+            Assert.assertEquals("first", cachingGraph.getVertex(id).getProperty("name"));
+            Assert.assertEquals(1, cache.getMissCount());
+            Assert.assertEquals(1, cache.getHitCount());
+
+            // A write drops the cached snapshot
+            cachingGraph.getVertex(id).setProperty("name", "second");
+            cachingGraph.commit();
+            Assert.assertEquals("second", cachingGraph.getVertex(id).getProperty("name"));
+            Assert.assertEquals(2, cache.getMissCount());
+
+            // The snapshot cached after an uncommitted write is dropped when it rolls back
+            cachingGraph.getVertex(id).setProperty("name", "discarded");
+            Assert.assertEquals("discarded", cachingGraph.getVertex(id).getProperty("name"));
+            cachingGraph.rollback();
+            Assert.assertEquals("second", cachingGraph.getVertex(id).getProperty("name"));
+            Assert.assertEquals(4, cache.getMissCount());
+            Assert.assertEquals(3, cache.getHitCount());
+
+            // Expired snapshots are read again
+            Thread.sleep(600);
+            Assert.assertEquals("second", cachingGraph.getVertex(id).getProperty("name"));
+            Assert.assertEquals(5, cache.getMissCount());
+
+            cachingGraph.removeVertex(cachingGraph.getVertex(id));
+            cachingGraph.commit();
+            Assert.assertNull(cachingGraph.getVertex(id));
+            Assert.assertEquals(6, cache.getMissCount());
+            Assert.assertEquals(4, cache.getHitCount());
+        } finally {
+            cachingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void removedVertexCacheTest() {
+        Neo4jGraph cachingGraph = openGraph("cacheSize", 100, "identityMapSize", 0);
+        try {
+            Vertex a = cachingGraph.addVertex(null);
+            Vertex b = cachingGraph.addVertex(null);
+            Vertex c = cachingGraph.addVertex(null);
+            Object ab = cachingGraph.addEdge(null, a, b, "CACHED").getId();
+            Object bc = cachingGraph.addEdge(null, b, c, "CACHED").getId();
+            cachingGraph.commit();
+            Assert.assertNotNull(cachingGraph.getEdge(ab));
+            Assert.assertNotNull(cachingGraph.getEdge(bc));
+
+            // Only the relationships of the removed vertex leave the cache
+            cachingGraph.removeVertex(cachingGraph.getVertex(a.getId()));
+            cachingGraph.commit();
+            ElementCache<?> cache = cachingGraph.getEdgeCache();
+            long hits = cache.getHitCount();
+            Assert.assertNull(cachingGraph.getEdge(ab));
+            Assert.assertNotNull(cachingGraph.getEdge(bc));
+            Assert.assertEquals(hits + 1, cache.getHitCount());
+        } finally {
+            cachingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void adjacencyCacheTest() {
+        Neo4jGraph cachingGraph = openGraph("adjacencyCacheSize", 100);
+        try {
+            Vertex a = cachingGraph.addVertex(null);
+            Vertex b = cachingGraph.addVertex(null);
+            Vertex c = cachingGraph.addVertex(null);
+            cachingGraph.addEdge(null, a, b, "ADJACENT");
+            cachingGraph.commit();
+
+            Assert.assertEquals(ids(Collections.singleton(b)), ids(a.getVertices(Direction.OUT)));
+            Assert.assertEquals(Collections.emptySet(), ids(c.getVertices(Direction.IN)));
+            Assert.assertEquals(ids(a.getVertices(Direction.OUT)), ids(a.getVertices(Direction.OUT)));
+            Assert.assertTrue(cachingGraph.getAdjacencyCache().getHitCount() > 0);
+
+            // Both endpoints of an added edge expand again
+            Edge edge = cachingGraph.addEdge(null, a, c, "ADJACENT");
+            Assert.assertEquals(ids(Arrays.asList(b, c)), ids(a.getVertices(Direction.OUT)));
+            Assert.assertEquals(ids(Collections.singleton(a)), ids(c.getVertices(Direction.IN)));
+            cachingGraph.commit();
+
+            // And so do both endpoints of a removed one
+            cachingGraph.removeEdge(edge);
+            Assert.assertEquals(ids(Collections.singleton(b)), ids(a.getVertices(Direction.OUT)));
+            Assert.assertEquals(Collections.emptySet(), ids(c.getVertices(Direction.IN)));
+            cachingGraph.commit();
+        } finally {
+            cachingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void removedEndpointTest() {
+        Configuration config = config();
+        config.setProperty("blueprints.neo4j.edgeBatchSize", 10);
+        Neo4jGraph batchingGraph = (Neo4jGraph) GraphFactory.open(config);
+        try {
+            Vertex v1 = batchingGraph.addVertex(null);
+            Vertex v2 = batchingGraph.addVertex(null);
+            batchingGraph.commit();
+
+            Edge edge = batchingGraph.addEdge(null, v1, v2, "PENDING");
+            Assert.assertTrue(((Neo4jEdge) edge).isPending());
+            batchingGraph.removeVertex(v2);
+            batchingGraph.commit();
+            Assert.assertEquals(0, batchingGraph.countEdges());
+        } finally {
+            batchingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void removeLazyEdgeTest() {
+        Neo4jGraph lazyGraph = openGraph("lazyLoading", true);
+        try {
+            Vertex v1 = lazyGraph.addVertex(null);
+            Vertex v2 = lazyGraph.addVertex(null);
+            lazyGraph.addEdge(null, v1, v2, "LAZY");
+            lazyGraph.commit();
+
+            Edge edge = lazyGraph.getVertex(v1.getId()).getEdges(Direction.OUT).iterator().next();
+            Assert.assertFalse(((Neo4jEdge) edge).isHydrated());
+            lazyGraph.removeEdge(edge);
+            lazyGraph.commit();
+            Assert.assertFalse(lazyGraph.getVertex(v1.getId()).getEdges(Direction.OUT).iterator().hasNext());
+            Assert.assertEquals(0, lazyGraph.countEdges());
+        } finally {
+            lazyGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void identityMapTest() {
+        Object id = addVertex("name", "identity").getId();
+        graphDb.commit();
+
+        // One wrapper per element and transaction
+        Vertex vertex = graphDb.getVertex(id);
+        Assert.assertSame(vertex, graphDb.getVertex(id));
+        Assert.assertSame(vertex, graphDb.getVertices("name", "identity").iterator().next());
+        graphDb.commit();
+        Assert.assertNotSame(vertex, graphDb.getVertex(id));
+        graphDb.commit();
+
+        // Each statement run in auto-commit mode is a transaction of its own
+        Neo4jGraph pagingGraph = openGraph("scanPageSize", 10);
+        try {
+            Vertex scanned = pagingGraph.getVertices().iterator().next();
+            Assert.assertNotSame(scanned, pagingGraph.getVertices().iterator().next());
+            Assert.assertEquals(scanned, pagingGraph.getVertices().iterator().next());
+        } finally {
+            pagingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void identityMapSizeTest() {
+        Neo4jGraph cappedGraph = openGraph("identityMapSize", 2);
+        try {
+            List<Object> ids = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                ids.add(cappedGraph.addVertex(null).getId());
+            }
+            cappedGraph.commit();
+
+            Vertex first = cappedGraph.getVertex(ids.get(0));
+            Vertex second = cappedGraph.getVertex(ids.get(1));
+            Vertex third = cappedGraph.getVertex(ids.get(2));
+            Assert.assertSame(first, cappedGraph.getVertex(ids.get(0)));
+            Assert.assertSame(second, cappedGraph.getVertex(ids.get(1)));
+            // The map is full, so the third vertex is wrapped again
+            Assert.assertNotSame(third, cappedGraph.getVertex(ids.get(2)));
+            Assert.assertEquals(third, cappedGraph.getVertex(ids.get(2)));
+            cappedGraph.commit();
+        } finally {
+            cappedGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void pendingEqualityTest() {
+        Configuration config = config();
+        config.setProperty("blueprints.neo4j.vertexBatchSize", 10);
+        Neo4jGraph batchingGraph = (Neo4jGraph) GraphFactory.open(config);
+        try {
+            Vertex v1 = batchingGraph.addVertex(null);
+            Vertex v2 = batchingGraph.addVertex(null);
+            Set<Vertex> vertices = new HashSet<>(Arrays.asList(v1, v2, v1));
+            Assert.assertEquals(2, vertices.size());
+            Assert.assertNotEquals(v1, v2);
+            Assert.assertTrue(((Neo4jVertex) v1).isPending());
+            batchingGraph.commit();
+        } finally {
+            batchingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void propertyBufferTest() {
+        Neo4jGraph bufferingGraph = openGraph("propertyBufferSize", 3);
+        try {
+            Vertex vertex = bufferingGraph.addVertex(null);
+            vertex.setProperty("name", "buffered");
+            Assert.assertFalse(bufferingGraph.getWriteBuffer().isEmpty());
+            Assert.assertEquals("buffered", vertex.getProperty("name"));
+
+            // A statement run by the graph sees the buffered write
+            Assert.assertEquals(Collections.singleton(vertex.getId()), ids(bufferingGraph.getVertices("name", "buffered")));
+            Assert.assertTrue(bufferingGraph.getWriteBuffer().isEmpty());
+
+            // The write that fills the buffer sends it
+            vertex.setProperty("a", 1);
+            vertex.setProperty("b", 2);
+            Assert.assertFalse(bufferingGraph.getWriteBuffer().isEmpty());
+            vertex.removeProperty("name");
+            Assert.assertTrue(bufferingGraph.getWriteBuffer().isEmpty());
+
+            // Commit sends what is left
+            vertex.setProperty("c", 3);
+            bufferingGraph.commit();
+            Vertex committed = graphDb.getVertex(vertex.getId());
+            Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), committed.getPropertyKeys());
+            Assert.assertEquals((Object) 3L, committed.getProperty("c"));
+            graphDb.commit();
+        } finally {
+            bufferingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void batchSizeTest() {
+        Neo4jGraph batchingGraph = openGraph("vertexBatchSize", 3, "edgeBatchSize", 2);
+        try {
+            Neo4jVertex v1 = (Neo4jVertex) batchingGraph.addVertex(null);
+            Neo4jVertex v2 = (Neo4jVertex) batchingGraph.addVertex(null);
+            Assert.assertTrue(v1.isPending());
+            Assert.assertTrue(v2.isPending());
+            Neo4jVertex v3 = (Neo4jVertex) batchingGraph.addVertex(null);
+            Assert.assertFalse(v1.isPending());
+            Assert.assertFalse(v3.isPending());
+
+            Neo4jEdge e1 = (Neo4jEdge) batchingGraph.addEdge(null, v1, v2, "next");
+            Assert.assertTrue(e1.isPending());
+            Neo4jEdge e2 = (Neo4jEdge) batchingGraph.addEdge(null, v2, v3, "next");
+            Assert.assertFalse(e1.isPending());
+            Assert.assertFalse(e2.isPending());
+
+            // Commit sends the batches that are not full
+            Neo4jVertex v4 = (Neo4jVertex) batchingGraph.addVertex(null);
+            Neo4jEdge e3 = (Neo4jEdge) batchingGraph.addEdge(null, v3, v4, "next");
+            Assert.assertTrue(v4.isPending());
+            Assert.assertTrue(e3.isPending());
+            batchingGraph.commit();
+            Assert.assertFalse(v4.isPending());
+            Assert.assertFalse(e3.isPending());
+
+            Assert.assertEquals(4, graphDb.countVertices());
+            Assert.assertEquals(3, graphDb.countEdges());
+            Assert.assertEquals(v4.getId(), graphDb.getEdge(e3.getId()).getVertex(Direction.OUT).getId());
+            graphDb.commit();
+        } finally {
+            batchingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void autoCommitEveryTest() {
+        Neo4jGraph committingGraph = openGraph("autoCommitEvery", 3);
+        try {
+            List<Long> commits = new ArrayList<>();
+            committingGraph.setCommitListener((mutations, parameterBytes) -> commits.add(mutations));
+            for (int i = 0; i < 7; i++) {
+                committingGraph.addVertex(null);
+            }
+            Assert.assertEquals(Arrays.asList(3L, 3L), commits);
+            Assert.assertEquals(6, graphDb.countVertices());
+
+            // An explicit commit restarts the count
+            committingGraph.commit();
+            Assert.assertEquals(7, graphDb.countVertices());
+            committingGraph.addVertex(null);
+            committingGraph.addVertex(null);
+            Assert.assertEquals(2, commits.size());
+            committingGraph.rollback();
+            Assert.assertEquals(7, graphDb.countVertices());
+        } finally {
+            committingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void autoCommitBytesTest() {
+        Neo4jGraph committingGraph = openGraph("autoCommitBytes", 100);
+        try {
+            List<long[]> commits = new ArrayList<>();
+            committingGraph.setCommitListener((mutations, parameterBytes) -> commits.add(new long[]{mutations, parameterBytes}));
+            Vertex vertex = committingGraph.addVertex(null);
+            vertex.setProperty("text", "0123456789");
+            Assert.assertTrue(commits.isEmpty());
+            Assert.assertEquals(0, graphDb.countVertices());
+
+            vertex.setProperty("text", "0123456789abcdefghij");
+            Assert.assertEquals(1, commits.size());
+            Assert.assertEquals(3, commits.get(0)[0]);
+            Assert.assertTrue(commits.get(0)[1] >= 100);
+            Assert.assertEquals("0123456789abcdefghij", graphDb.getVertex(vertex.getId()).getProperty("text"));
+            graphDb.commit();
+        } finally {
+            committingGraph.shutdown();
+        }
+    }
+
+    @Test
+    public void batchGraphTest() {
+        Configuration config = config();
+        config.setProperty("blueprints.neo4j.batchCommitSize", 7);
+        Neo4jBatchGraph batchGraph = new Neo4jBatchGraph(config);
+
+        for (int i = 0; i < 20; i++) {
+            Vertex vertex = batchGraph.addVertex("ext" + i);
+            vertex.setProperty("name", "v" + i);
+            if (i > 0) {
+                batchGraph.addEdge(null, batchGraph.getVertex("ext" + (i - 1)), vertex, "NEXT");
+            }
+        }
+        batchGraph.commit();
+
+        Vertex first = batchGraph.getVertex("ext0");
+        Assert.assertEquals("v0", first.getProperty("name"));
+        Vertex second = first.getVertices(Direction.OUT, "NEXT").iterator().next();
+        Assert.assertEquals(batchGraph.getVertex("ext1").getId(), second.getId());
+        batchGraph.shutdown();
+    }
+
+    @Test
+    public void resumableImportTest() throws Exception {
+        String graphSON = "{\"mode\":\"NORMAL\",\"vertices\":[" +
+                "{\"name\":\"importA\",\"_id\":1,\"_type\":\"vertex\"}," +
+                "{\"name\":\"importB\",\"_id\":2,\"_type\":\"vertex\"}," +
+                "{\"name\":\"importC\",\"_id\":3,\"_type\":\"vertex\"}]," +
+                "\"edges\":[{\"weight\":0.5,\"_id\":7,\"_type\":\"edge\",\"_outV\":1,\"_inV\":2,\"_label\":\"knows\"}," +
+                "{\"weight\":1.0,\"_id\":8,\"_type\":\"edge\",\"_outV\":2,\"_inV\":3,\"_label\":\"knows\"}]}";
+        Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+
+        Configuration config = config();
+        config.setProperty("blueprints.neo4j.batchCommitSize", 2);
+        config.setProperty("blueprints.neo4j.idMapFile", folder.getRoot().toPath().resolve("ids.map").toString());
+
+        for (int run = 0; run < 2; run++) {
+            Neo4jBatchGraph batchGraph = new Neo4jBatchGraph(config);
+            Neo4jGraphImporter importer = new Neo4jGraphImporter(batchGraph, checkpoint);
+            Assert.assertEquals(5, importer.importGraphSON(new ByteArrayInputStream(graphSON.getBytes(StandardCharsets.UTF_8))));
+            batchGraph.shutdown();
+        }
+
+        int count = 0;
+        for (Vertex v : graphDb.getVertices("name", "importB")) {
+            Assert.assertEquals("importC", v.getVertices(Direction.OUT, "knows").iterator().next().getProperty("name"));
+            count++;
+        }
+        Assert.assertEquals(1, count);
+    }
+
+    @Test
+    public void interruptedImportTest() throws Exception {
+        String vertices = "{\"mode\":\"NORMAL\",\"vertices\":[" +
+                "{\"name\":\"importA\",\"_id\":1,\"_type\":\"vertex\"}," +
+                "{\"name\":\"importB\",\"_id\":2,\"_type\":\"vertex\"}," +
+                "{\"name\":\"importC\",\"_id\":3,\"_type\":\"vertex\"}],\"edges\":[";
+        String edge8 = "{\"_id\":8,\"_type\":\"edge\",\"_outV\":2,\"_inV\":3,\"_label\":\"knows\"}]}";
+        // The first run dies on the unknown vertex 99 after committing the first batch
+        String broken = vertices + "{\"_id\":7,\"_type\":\"edge\",\"_outV\":1,\"_inV\":99,\"_label\":\"knows\"}," + edge8;
+        String fixed = vertices + "{\"_id\":7,\"_type\":\"edge\",\"_outV\":1,\"_inV\":2,\"_label\":\"knows\"}," + edge8;
+        Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+
+        Configuration config = config();
+        config.setProperty("blueprints.neo4j.batchCommitSize", 2);
+        config.setProperty("blueprints.neo4j.idMapFile", folder.getRoot().toPath().resolve("ids.map").toString());
+
+        Neo4jBatchGraph killed = new Neo4jBatchGraph(config);
+        try {
+            new Neo4jGraphImporter(killed, checkpoint).importGraphSON(new ByteArrayInputStream(broken.getBytes(StandardCharsets.UTF_8)));
+            Assert.fail("The edge to vertex 99 should not be imported");
+        } catch (IllegalArgumentException expected) {
+            // Abandon the batch graph without committing, as if the process had been killed
+            killed.getBaseGraph().rollback();
+            killed.getBaseGraph().shutdown();
+        }
+        Assert.assertEquals(2, killed.getCommittedProgress());
+        // Die between the commit and the checkpoint file as well
+        Files.delete(checkpoint);
+
+        Neo4jBatchGraph resumed = new Neo4jBatchGraph(config);
+        Assert.assertEquals(5, new Neo4jGraphImporter(resumed, checkpoint).importGraphSON(new ByteArrayInputStream(fixed.getBytes(StandardCharsets.UTF_8))));
+        resumed.shutdown();
+
+        Assert.assertEquals(3, graphDb.countVertices());
+        Assert.assertEquals(2, graphDb.countEdges());
+        Vertex b = graphDb.getVertices("name", "importB").iterator().next();
+        Assert.assertEquals("importC", b.getVertices(Direction.OUT, "knows").iterator().next().getProperty("name"));
+        Assert.assertEquals("importA", b.getVertices(Direction.IN, "knows").iterator().next().getProperty("name"));
+    }
+
+    @Test
+    public void idMapBehindStoreTest() throws Exception {
+        String vertices = "{\"mode\":\"NORMAL\",\"vertices\":[" +
+                "{\"name\":\"importA\",\"_id\":1,\"_type\":\"vertex\"}," +
+                "{\"name\":\"importB\",\"_id\":2,\"_type\":\"vertex\"}," +
+                "{\"name\":\"importC\",\"_id\":3,\"_type\":\"vertex\"}],\"edges\":[";
+        String edge8 = "{\"_id\":8,\"_type\":\"edge\",\"_outV\":2,\"_inV\":3,\"_label\":\"knows\"}]}";
+        String broken = vertices + "{\"_id\":7,\"_type\":\"edge\",\"_outV\":1,\"_inV\":99,\"_label\":\"knows\"}," + edge8;
+        String fixed = vertices + "{\"_id\":7,\"_type\":\"edge\",\"_outV\":1,\"_inV\":2,\"_label\":\"knows\"}," + edge8;
+        Path checkpoint = folder.getRoot().toPath().resolve("import.checkpoint");
+        Path idMapFile = folder.getRoot().toPath().resolve("ids.map");
+
+        Configuration config = config();
+        config.setProperty("blueprints.neo4j.batchCommitSize", 2);
+        config.setProperty("blueprints.neo4j.idMapFile", idMapFile.toString());
+
+        Neo4jBatchGraph killed = new Neo4jBatchGraph(config);
+        try {
+            new Neo4jGraphImporter(killed, checkpoint).importGraphSON(new ByteArrayInputStream(broken.getBytes(StandardCharsets.UTF_8)));
+            Assert.fail("The edge to vertex 99 should not be imported");
+        } catch (IllegalArgumentException expected) {
+            killed.getBaseGraph().rollback();
+            killed.getBaseGraph().shutdown();
+        }
+        // Die after Neo4j committed the first batch but before the id map and the checkpoint file recorded it
+        Files.delete(idMapFile);
+        Files.delete(checkpoint);
+
+        Neo4jBatchGraph resumed = new Neo4jBatchGraph(config);
+        Assert.assertEquals(2, resumed.getCommittedProgress());
+        Assert.assertEquals(5, new Neo4jGraphImporter(resumed, checkpoint).importGraphSON(new ByteArrayInputStream(fixed.getBytes(StandardCharsets.UTF_8))));
+        resumed.shutdown();
+
+        // Neither the vertices of the first batch nor the checkpoint node are left twice in the store
+        Assert.assertEquals(3, graphDb.countVertices());
+        Assert.assertEquals(2, graphDb.countEdges());
+        Vertex b = graphDb.getVertices("name", "importB").iterator().next();
+        Assert.assertEquals("importA", b.getVertices(Direction.IN, "knows").iterator().next().getProperty("name"));
+    }
+
     @Test
     public void sanityCheck() {
         try {
@@ -95,6 +964,7 @@ public class GraphPerfTest {
             String k2v = v1.removeProperty("k2");
             Assert.assertEquals("k2v", k2v);
             Assert.assertNull(v1.getProperty("k2"));
+            Assert.assertFalse(storedKeys("match (n) where id(n) = {id} return keys(n)", v1).contains("k2"));
 
             // Edge Add
             Vertex v2 = graphDb.addVertex(null);
@@ -112,6 +982,7 @@ public class GraphPerfTest {
             // Edge Remove Property
             Assert.assertEquals("k1v2", e1.removeProperty("k1"));
             Assert.assertNull(e1.getProperty("k1"));
+            Assert.assertFalse(storedKeys("match ()-[r]->() where id(r) = {id} return keys(r)", e1).contains("k1"));
 
             // Edge Remove
             e1.remove();
@@ -127,6 +998,13 @@ public class GraphPerfTest {
         }
     }
 
+    /**
+     * Reads the property keys of an element from the server rather than from its wrapper.
+     */
+    private List<Object> storedKeys(String statement, Element element) {
+        return graphDb.withTx().run(statement, Values.parameters("id", element.getId())).single().get(0).asList();
+    }
+
     @Test
     public void testNeo4j() {
         int MAXPAIRS = 1000;
@@ -0,0 +1,43 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongObjectMapTest {
+
+    @Test
+    public void putGetAndRemoveGrowingTable() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        for (long i = 0; i < 1000; i++) {
+            map.put(i * 16, "v" + i);
+        }
+        Assert.assertEquals(1000, map.size());
+        for (long i = 0; i < 1000; i += 2) {
+            Assert.assertEquals("v" + i, map.remove(i * 16));
+        }
+        Assert.assertEquals(500, map.size());
+        for (long i = 0; i < 1000; i++) {
+            Assert.assertEquals(i % 2 == 0 ? null : "v" + i, map.get(i * 16));
+        }
+    }
+
+    @Test
+    public void negativeKeysAreNeverFound() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(1, "one");
+        Assert.assertNull(map.get(-1));
+        Assert.assertNull(map.remove(-1));
+        Assert.assertEquals(1, map.size());
+
+        // clear() skips an empty map, so a size gone wrong would leave the entries behind
+        map.clear();
+        Assert.assertEquals(0, map.size());
+        Assert.assertNull(map.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeKeysAreRejected() {
+        new LongObjectMap<String>().put(-1, "pending");
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.tinkerpop.blueprints.impls.neo4j;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+public class OffHeapIdMapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void putAndGetGrowingTable() throws Exception {
+        try (OffHeapIdMap idMap = OffHeapIdMap.allocate(4)) {
+            for (long i = 0; i < 100000; i++) {
+                idMap.put(i * 31, i);
+            }
+            Assert.assertEquals(100000, idMap.size());
+            for (long i = 0; i < 100000; i++) {
+                Assert.assertEquals(i, idMap.get(i * 31));
+            }
+            Assert.assertEquals(OffHeapIdMap.NOT_FOUND, idMap.get(1L));
+        }
+    }
+
+    @Test
+    public void integralAndStringKeys() throws Exception {
+        try (OffHeapIdMap idMap = OffHeapIdMap.allocate(16)) {
+            idMap.put((Object) 42, 7);
+            idMap.put("marko", 8);
+            Assert.assertEquals(7, idMap.get((Object) 42L));
+            Assert.assertEquals(8, idMap.get((Object) "marko"));
+            Assert.assertFalse(idMap.containsKey("42"));
+
+            idMap.put("marko", 9);
+            Assert.assertEquals(9, idMap.get((Object) "marko"));
+            Assert.assertEquals(2, idMap.size());
+        }
+    }
+
+    @Test
+    public void reopenMappedFile() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("ids.map");
+        try (OffHeapIdMap idMap = OffHeapIdMap.open(file, 4)) {
+            for (int i = 0; i < 10000; i++) {
+                idMap.put("v" + i, i);
+            }
+        }
+        try (OffHeapIdMap idMap = OffHeapIdMap.open(file, 4)) {
+            Assert.assertEquals(10000, idMap.size());
+            for (int i = 0; i < 10000; i++) {
+                Assert.assertEquals(i, idMap.get((Object) ("v" + i)));
+            }
+        }
+    }
+
+}